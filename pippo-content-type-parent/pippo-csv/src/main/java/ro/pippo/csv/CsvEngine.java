@@ -29,22 +29,51 @@ import ro.pippo.core.ParameterValue;
 import ro.pippo.core.util.ClassUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
+ * A CSV content type engine.
+ * <p/>
+ * The engine serializes a {@link Csv}, an array of {@link Csv}, an {@link Iterable},
+ * an {@link Iterator} or a {@link Stream} of {@link Csv} objects. The records are written
+ * one by one, so an {@link Iterator} or a {@link Stream} can be exported to the response
+ * without loading all the records in memory. A {@link Stream} is closed after it's written.
+ * <p/>
+ * For large uploads use {@link #fromCsv(Reader, Class, Consumer)} that parses the records
+ * one by one.
+ *
  * @author James Moger
  */
 @MetaInfServices(ContentTypeEngine.class)
@@ -57,7 +86,8 @@ public class CsvEngine implements ContentTypeEngine {
     private final static String YYYYMMDDHHMMSS = "yyyy-MM-dd HH:mm:ss";
 
     private boolean caseSensitiveFieldNames;
-    private String datePattern = YYYYMMDDHHMMSS;
+    private String datePattern = YYYYMMDDHHMMSS; // a SimpleDateFormat (not thread safe) is created per value
+    private DateTimeFormatter dateTimeFormatter; // it replaces the date pattern if it's set
     private Character delimiter = ',';
     private Character escapeCharacter;
     private Character quoteCharacter = '\"';
@@ -65,6 +95,9 @@ public class CsvEngine implements ContentTypeEngine {
     private String nullString;
     private String recordSeparator = "\r\n";
 
+    // the fields of a class by name (see caseSensitiveFieldNames)
+    private final Map<Class<?>, Map<String, Field>> fieldMaps = new ConcurrentHashMap<>();
+
     /**
      * Controls case-sensitivity when mapping CSV column names to object fields during deserialization from CSV.
      *
@@ -72,10 +105,31 @@ public class CsvEngine implements ContentTypeEngine {
      */
     public void setCaseSensitiveFieldNames(boolean caseSensitiveFieldNames) {
         this.caseSensitiveFieldNames = caseSensitiveFieldNames;
+        fieldMaps.clear();
     }
 
+    /**
+     * Sets the pattern used for {@link Date} values, with the {@link SimpleDateFormat} syntax.
+     *
+     * @param datePattern
+     */
     public void setDatePattern(String datePattern) {
+        // fail fast on an invalid pattern
+        new SimpleDateFormat(datePattern);
+
         this.datePattern = datePattern;
+        this.dateTimeFormatter = null;
+    }
+
+    /**
+     * Sets the (thread safe) formatter used for {@link Date} values, instead of a date pattern.
+     * A date is formatted in the zone of the formatter (the system default zone if the formatter has no zone).
+     * A parsed value without a zone or an offset is in the same zone; a value without a time is at midnight.
+     *
+     * @param dateTimeFormatter
+     */
+    public void setDateTimeFormatter(DateTimeFormatter dateTimeFormatter) {
+        this.dateTimeFormatter = dateTimeFormatter;
     }
 
     public void setDelimiter(char delimiter) {
@@ -123,57 +177,108 @@ public class CsvEngine implements ContentTypeEngine {
 
     @Override
     public String toString(Object object) {
-        if (object instanceof Csv) {
-            return toCsv((Csv) object);
-        } else if (object.getClass().isArray() && Csv.class.isAssignableFrom(object.getClass().getComponentType())) {
-            return toCsv((Csv[]) object);
-        } else if (Collection.class.isAssignableFrom(object.getClass())) {
-            // Collections are supported for serialization to CSV
-            ArrayList<?> list = new ArrayList<>((Collection<?>) object);
-            for (Object item : list) {
-                if (!(item instanceof Csv)) {
-                    throw new RuntimeException("All objects in the supplied collection must implement " + Csv.class.getName());
-                }
+        try {
+            Iterator<? extends Csv> records = toRecords(object);
+            if (!records.hasNext()) {
+                return null;
             }
 
-            return toCsv(list.toArray(new Csv[list.size()]));
+            StringWriter writer = new StringWriter();
+            toCsv(writer, records);
+
+            return writer.toString();
+        } finally {
+            closeStream(object);
         }
+    }
 
-        throw new RuntimeException("Unexpected object type " + object.getClass().getName());
+    @Override
+    public void toStream(Object object, OutputStream output, Charset charset) {
+        try {
+            Writer writer = new OutputStreamWriter(output, charset);
+            toCsv(writer, toRecords(object));
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write CSV", e);
+        } finally {
+            closeStream(object);
+        }
     }
 
     public String toCsv(Csv... records) {
         if (records != null && records.length > 0) {
-            String[] header = records[0].getCsvHeader();
             StringWriter writer = new StringWriter();
-            try (CSVPrinter printer = getCSVFormat().withHeader(header).print(writer)) {
-                for (Csv record : records) {
-                    Object [] data = record.getCsvData();
-                    if (data == null || data.length == 0) {
-                        log.debug("Skipping null or empty record");
-                        continue;
-                    }
+            toCsv(writer, records);
+
+            return writer.toString();
+        }
 
+        return null;
+    }
+
+    public void toCsv(Writer writer, Csv... records) {
+        if (records != null && records.length > 0) {
+            toCsv(writer, Arrays.asList(records).iterator());
+        }
+    }
+
+    /**
+     * Writes the records to the writer, one by one. The header is taken from the first record.
+     * The writer is flushed but not closed.
+     *
+     * @param writer
+     * @param records
+     * @return the number of records
+     */
+    public long toCsv(Writer writer, Iterator<? extends Csv> records) {
+        if (!records.hasNext()) {
+            return 0;
+        }
+
+        long count = 0;
+        Csv record = records.next();
+        try {
+            // don't close the printer, the caller owns the writer
+            CSVPrinter printer = getCSVFormat().withHeader(record.getCsvHeader()).print(writer);
+            while (true) {
+                Object[] data = record.getCsvData();
+                if (data == null || data.length == 0) {
+                    log.debug("Skipping null or empty record");
+                } else {
                     for (Object column : data) {
                         printer.print(objectToString(column));
                     }
                     printer.println();
+                    count++;
                 }
-            } catch (IOException e) {
-                log.error("Failed to generate CSV", e);
-            }
 
-            return writer.toString();
+                if (!records.hasNext()) {
+                    break;
+                }
+                record = records.next();
+            }
+            printer.flush();
+        } catch (IOException e) {
+            log.error("Failed to generate CSV", e);
         }
 
-        return null;
+        return count;
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public <T> T fromString(String content, Class<T> classOfT) {
+        return fromCsv(new StringReader(content), classOfT);
+    }
+
+    @Override
+    public <T> T fromStream(InputStream input, Charset charset, Class<T> classOfT) {
+        return fromCsv(new InputStreamReader(input, charset), classOfT);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T fromCsv(Reader reader, Class<T> classOfT) {
         if (!classOfT.isArray()) {
-            if (Collection.class.isAssignableFrom(classOfT)) {
+            if (Iterable.class.isAssignableFrom(classOfT)) {
                 // Collections are NOT supported for deserialization from CSV
                 throw new RuntimeException("Collection types are not supported. Please specify an array[] type.");
             }
@@ -181,39 +286,63 @@ public class CsvEngine implements ContentTypeEngine {
         }
 
         Class<?> objectType = classOfT.getComponentType();
-        int currentLine = 0;
-        try (CSVParser parser = new CSVParser(new StringReader(content), getCSVFormat().withHeader())) {
-            Set<String> columns = parser.getHeaderMap().keySet();
-            Map<String, Field> fieldMap = getFieldMap(objectType);
+        List<Object> objects = new ArrayList<>();
+        fromCsv(reader, objectType, objects::add);
 
-            Constructor<?> objectConstructor;
-            try {
-                objectConstructor = objectType.getConstructor();
-            } catch (NoSuchMethodException e) {
-                throw new RuntimeException("A default constructor is required for " + objectType.getName());
+        Object array = Array.newInstance(objectType, objects.size());
+        for (int i = 0; i < objects.size(); i++) {
+            Array.set(array, i, objects.get(i));
+        }
+
+        return (T) array;
+    }
+
+    /**
+     * Parses the CSV records one by one and passes each object to the consumer,
+     * so the memory usage doesn't depend on the number of records.
+     * The first record must be the header with the field names.
+     * The reader is closed.
+     *
+     * @param reader
+     * @param objectType the type of the objects (with a default constructor)
+     * @param consumer
+     * @return the number of records
+     */
+    public <T> long fromCsv(Reader reader, Class<T> objectType, Consumer<? super T> consumer) {
+        Constructor<T> objectConstructor;
+        try {
+            objectConstructor = objectType.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("A default constructor is required for " + objectType.getName());
+        }
+
+        long currentLine = 0;
+        try (CSVParser parser = new CSVParser(reader, getCSVFormat().withHeader())) {
+            // resolve the field of each column once
+            Map<String, Field> fieldMap = getFieldMap(objectType);
+            List<String> columns = new ArrayList<>(parser.getHeaderMap().keySet());
+            Field[] fields = new Field[columns.size()];
+            for (int i = 0; i < fields.length; i++) {
+                String column = columns.get(i);
+                fields[i] = fieldMap.get(caseSensitiveFieldNames ? column : column.toLowerCase());
+                if (fields[i] == null) {
+                    throw new RuntimeException("There is no field for column '" + column + "' in " + objectType.getName());
+                }
             }
 
-            List objects = new ArrayList<>();
             for (CSVRecord record : parser) {
                 currentLine++;
 
-                Object o = objectConstructor.newInstance();
-                for (String column : columns) {
-                    Field field = fieldMap.get(caseSensitiveFieldNames ? column : column.toLowerCase());
-                    String value = record.get(column);
-                    Object object = objectFromString(value, field.getType());
-                    field.set(o, object);
+                T o = objectConstructor.newInstance();
+                for (int i = 0; i < fields.length; i++) {
+                    String value = record.get(i);
+                    fields[i].set(o, objectFromString(value, fields[i].getType()));
                 }
 
-                objects.add(o);
+                consumer.accept(o);
             }
 
-            Object array = Array.newInstance(objectType, objects.size());
-            for (int i = 0; i < objects.size(); i++) {
-                Array.set(array, i, objects.get(i));
-            }
-
-            return (T) array;
+            return currentLine;
         } catch (Exception e) {
             throw new RuntimeException("Failed to parse CSV near line #" + currentLine, e);
         }
@@ -234,7 +363,7 @@ public class CsvEngine implements ContentTypeEngine {
         } else if (object instanceof java.sql.Timestamp) {
             return object.toString();
         } else if (object instanceof Date) {
-            return new SimpleDateFormat(datePattern).format((Date) object);
+            return formatDate((Date) object);
         }
 
         return object.toString();
@@ -258,23 +387,115 @@ public class CsvEngine implements ContentTypeEngine {
         } else if (java.sql.Timestamp.class.isAssignableFrom(objectClass)) {
             return pv.toSqlTimestamp();
         } else if (Date.class.isAssignableFrom(objectClass)) {
-            return pv.toDate(datePattern);
+            return parseDate(value);
         }
 
         return pv.to(objectClass);
     }
 
+    private String formatDate(Date date) {
+        if (dateTimeFormatter == null) {
+            return new SimpleDateFormat(datePattern).format(date);
+        }
+
+        return dateTimeFormatter.format(Instant.ofEpochMilli(date.getTime()).atZone(getZone()));
+    }
+
+    private Date parseDate(String value) throws ParseException {
+        if (value.isEmpty()) {
+            return null;
+        }
+
+        if (dateTimeFormatter == null) {
+            return new SimpleDateFormat(datePattern).parse(value);
+        }
+
+        try {
+            // on JDK 8 an override zone replaces the parsed offset, so parse without it
+            TemporalAccessor temporal = dateTimeFormatter.withZone(null).parse(value);
+            if (temporal.isSupported(ChronoField.INSTANT_SECONDS)) {
+                // the value has a zone or an offset
+                return Date.from(Instant.from(temporal));
+            }
+
+            LocalDate date = LocalDate.from(temporal);
+            LocalTime time = temporal.isSupported(ChronoField.HOUR_OF_DAY) ? LocalTime.from(temporal) : LocalTime.MIDNIGHT;
+            ZoneId zone = temporal.query(TemporalQueries.zone());
+
+            return Date.from(date.atTime(time).atZone((zone != null) ? zone : getZone()).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new ParseException(e.getMessage(), e.getErrorIndex());
+        }
+    }
+
+    private ZoneId getZone() {
+        ZoneId zone = dateTimeFormatter.getZone();
+
+        return (zone != null) ? zone : ZoneId.systemDefault();
+    }
+
+    /**
+     * Closes a {@link Stream} of records (for example a stream backed by a database cursor) after it's written.
+     */
+    private static void closeStream(Object object) {
+        if (object instanceof Stream) {
+            ((Stream<?>) object).close();
+        }
+    }
+
+    private Iterator<? extends Csv> toRecords(Object object) {
+        Iterator<?> iterator;
+        if (object instanceof Csv) {
+            return Arrays.asList((Csv) object).iterator();
+        } else if (object.getClass().isArray() && Csv.class.isAssignableFrom(object.getClass().getComponentType())) {
+            return Arrays.asList((Csv[]) object).iterator();
+        } else if (object instanceof Iterable) {
+            // Collections are supported for serialization to CSV
+            iterator = ((Iterable<?>) object).iterator();
+        } else if (object instanceof Iterator) {
+            iterator = (Iterator<?>) object;
+        } else if (object instanceof Stream) {
+            iterator = ((Stream<?>) object).iterator();
+        } else {
+            throw new RuntimeException("Unexpected object type " + object.getClass().getName());
+        }
+
+        // check the type of each record on the fly
+        return new Iterator<Csv>() {
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Csv next() {
+                Object item = iterator.next();
+                if (!(item instanceof Csv)) {
+                    throw new RuntimeException("All objects in the supplied collection must implement " + Csv.class.getName());
+                }
+
+                return (Csv) item;
+            }
+
+        };
+    }
+
     private Map<String, Field> getFieldMap(Class<?> classOfT) {
-        Map<String, Field> map = new HashMap<>();
-        for (Field field : ClassUtils.getAllFields(classOfT)) {
-            field.setAccessible(true);
-            String name;
-            if (caseSensitiveFieldNames) {
-                name = field.getName();
-            } else {
-                name = field.getName().toLowerCase();
+        Map<String, Field> map = fieldMaps.get(classOfT);
+        if (map == null) {
+            map = new HashMap<>();
+            for (Field field : ClassUtils.getAllFields(classOfT)) {
+                field.setAccessible(true);
+                String name;
+                if (caseSensitiveFieldNames) {
+                    name = field.getName();
+                } else {
+                    name = field.getName().toLowerCase();
+                }
+                map.put(name, field);
             }
-            map.put(name, field);
+            fieldMaps.put(classOfT, map);
         }
 
         return map;
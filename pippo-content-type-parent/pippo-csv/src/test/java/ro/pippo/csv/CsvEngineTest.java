@@ -21,12 +21,23 @@ import lombok.NoArgsConstructor;
 import lombok.ToString;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.sql.Date;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author James Moger
@@ -62,6 +73,59 @@ public class CsvEngineTest {
         assertEquals("Products are not the same", Arrays.toString(Product.get()), Arrays.toString(products));
     }
 
+    @Test
+    public void testToStream() throws Exception {
+        CsvEngine csvEngine = new CsvEngine();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        csvEngine.toStream(Stream.of(Product.get()), output, StandardCharsets.UTF_8);
+        String generated = output.toString("UTF-8").replace("\r\n", "\n").trim();
+
+        assertEquals("Generated CSV is not the same", expected, generated);
+    }
+
+    @Test
+    public void testStreamIsClosed() {
+        CsvEngine csvEngine = new CsvEngine();
+        AtomicBoolean closed = new AtomicBoolean();
+        csvEngine.toStream(Stream.of(Product.get()).onClose(() -> closed.set(true)), new ByteArrayOutputStream(), StandardCharsets.UTF_8);
+        assertTrue(closed.get());
+
+        closed.set(false);
+        csvEngine.toString(Stream.of(Product.get()).onClose(() -> closed.set(true)));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void testFromStreamToConsumer() {
+        CsvEngine csvEngine = new CsvEngine();
+        List<Product> products = new ArrayList<>();
+        long count = csvEngine.fromCsv(new StringReader(expected), Product.class, products::add);
+
+        assertEquals(5, count);
+        assertEquals("Products are not the same", Arrays.toString(Product.get()), products.toString());
+    }
+
+    @Test
+    public void testDatePattern() throws Exception {
+        CsvEngine csvEngine = new CsvEngine();
+        // SimpleDateFormat syntax ('u' is the day number of week)
+        csvEngine.setDatePattern("yyyy-MM-dd u");
+        java.util.Date date = new SimpleDateFormat("yyyy-MM-dd").parse("2016-12-12");
+
+        assertEquals("2016-12-12 1", csvEngine.objectToString(date));
+        assertEquals(date, csvEngine.objectFromString("2016-12-12 1", java.util.Date.class));
+    }
+
+    @Test
+    public void testDateTimeFormatterWithOffset() throws Exception {
+        CsvEngine csvEngine = new CsvEngine();
+        csvEngine.setDateTimeFormatter(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ssXXX").withZone(ZoneOffset.UTC));
+        java.util.Date date = (java.util.Date) csvEngine.objectFromString("2016-12-12 10:00:00+02:00", java.util.Date.class);
+
+        assertEquals(Instant.parse("2016-12-12T08:00:00Z"), date.toInstant());
+        assertEquals("2016-12-12 08:00:00Z", csvEngine.objectToString(date));
+    }
+
     final String expected = "id,sku,description,uuid,lastRestock\n" +
         "1,12345,Oranges,a0765bce-5d81-4b7c-8d28-b7f1efcb355b,2016-12-12\n" +
         "2,12345,Apples,25bc5325-6ce0-4e68-a5d9-4a5cfc6fb148,2015-12-12\n" +
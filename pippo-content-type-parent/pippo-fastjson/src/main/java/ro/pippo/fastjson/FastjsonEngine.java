@@ -20,8 +20,18 @@ import org.kohsuke.MetaInfServices;
 import ro.pippo.core.Application;
 import ro.pippo.core.ContentTypeEngine;
 import ro.pippo.core.HttpConstants;
+import ro.pippo.core.PippoRuntimeException;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONReader;
+import com.alibaba.fastjson.JSONWriter;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
 
 /**
  * A JsonEngine based on Fastjson.
@@ -45,9 +55,28 @@ public class FastjsonEngine implements ContentTypeEngine {
 		return JSON.toJSONString(object, SerializerFeature.UseISO8601DateFormat);
 	}
 
+	@Override
+	public void toStream(Object object, OutputStream output, Charset charset) {
+		JSONWriter writer = new JSONWriter(new OutputStreamWriter(output, charset));
+		writer.config(SerializerFeature.UseISO8601DateFormat, true);
+		writer.writeObject(object);
+		try {
+			writer.flush();
+		} catch (IOException e) {
+			throw new PippoRuntimeException(e, "Failed to write '{}' to JSON", object.getClass().getName());
+		}
+	}
+
 	@Override
 	public <T> T fromString(String content, Class<T> classOfT) {
 		return JSON.parseObject(content, classOfT);
 	}
 
+	@Override
+	public <T> T fromStream(InputStream input, Charset charset, Class<T> classOfT) {
+		JSONReader reader = new JSONReader(new InputStreamReader(input, charset));
+
+		return reader.readObject(classOfT);
+	}
+
 }
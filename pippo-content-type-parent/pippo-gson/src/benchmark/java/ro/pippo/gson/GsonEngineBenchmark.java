@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import com.google.gson.JsonSyntaxException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Type;
+import java.sql.Time;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of the shared {@link Gson} instance of {@link GsonEngine}
+ * with the previous behavior (a new {@link Gson} with {@link SimpleDateFormat} adapters for each call).
+ * <p/>
+ * The benchmark is compiled only in the <code>benchmark</code> profile. Run it with:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:java -Dexec.mainClass=ro.pippo.gson.GsonEngineBenchmark -Dexec.classpathScope=test
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class GsonEngineBenchmark {
+
+    private GsonEngine engine;
+    private Contact contact;
+    private String json;
+
+    @Setup
+    public void setup() {
+        engine = new GsonEngine();
+        engine.init(null);
+
+        contact = new Contact();
+        json = engine.toString(contact);
+    }
+
+    @Benchmark
+    public String toStringNewGson() {
+        return newGson().toJson(contact);
+    }
+
+    @Benchmark
+    public String toStringSharedGson() {
+        return engine.toString(contact);
+    }
+
+    @Benchmark
+    public Contact fromStringNewGson() {
+        return newGson().fromJson(json, Contact.class);
+    }
+
+    @Benchmark
+    public Contact fromStringSharedGson() {
+        return engine.fromString(json, Contact.class);
+    }
+
+    private Gson newGson() {
+        // the GsonEngine behavior before the shared instance
+        return new GsonBuilder()
+            .registerTypeAdapter(Date.class, new LegacyDateTypeAdapter("yyyy-MM-dd'T'HH:mm:ssZ"))
+            .registerTypeAdapter(Time.class, new LegacyDateTypeAdapter("HH:mm:ssZ"))
+            .registerTypeAdapter(java.sql.Date.class, new LegacyDateTypeAdapter("yyyy-MM-dd"))
+            .create();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(GsonEngineBenchmark.class.getSimpleName())
+            .build();
+
+        new Runner(options).run();
+    }
+
+    /**
+     * The (synchronized) {@link SimpleDateFormat} adapters of the previous GsonEngine;
+     * the benchmark only serializes with them, so a single class covers the three types.
+     */
+    private static class LegacyDateTypeAdapter implements JsonSerializer<Date>, JsonDeserializer<Date> {
+
+        private final DateFormat dateFormat;
+
+        private LegacyDateTypeAdapter(String pattern) {
+            dateFormat = new SimpleDateFormat(pattern, Locale.US);
+        }
+
+        @Override
+        public synchronized JsonElement serialize(Date date, Type type, JsonSerializationContext context) {
+            return new JsonPrimitive(dateFormat.format(date));
+        }
+
+        @Override
+        public synchronized Date deserialize(JsonElement jsonElement, Type type, JsonDeserializationContext context) {
+            try {
+                Date date = dateFormat.parse(jsonElement.getAsString());
+                long time = (date.getTime() / 1000) * 1000;
+                if (type == Time.class) {
+                    return new Time(time);
+                } else if (type == java.sql.Date.class) {
+                    return new java.sql.Date(time);
+                }
+
+                return new Date(time);
+            } catch (ParseException e) {
+                throw new JsonSyntaxException(jsonElement.getAsString(), e);
+            }
+        }
+
+    }
+
+    public static class Contact {
+
+        public int id = 1;
+        public String name = "John Doe";
+        public String email = "john@doe.com";
+        public String address = "Sunset Boulevard, 10";
+        public Date created = new Date();
+        public java.sql.Date birthday = java.sql.Date.valueOf("1980-01-01");
+        public Time alarm = Time.valueOf("07:30:00");
+
+    }
+
+}
@@ -20,6 +20,7 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
@@ -29,24 +30,40 @@ import ro.pippo.core.Application;
 import ro.pippo.core.ContentTypeEngine;
 import ro.pippo.core.HttpConstants;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.charset.Charset;
 import java.sql.Time;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 import java.util.Locale;
 
 /**
  * A JsonEngine based on Gson.
+ * The {@link Gson} instance is created once (in {@link #init(Application)} or on first use) and it's shared by all requests.
+ * To customize it, extend this class, override {@link #createGsonBuilder()} and register your engine
+ * in a {@link GsonInitializer} subclass.
  *
  * @author James Moger
  */
 @MetaInfServices(ContentTypeEngine.class)
 public class GsonEngine implements ContentTypeEngine {
 
+    private volatile Gson gson;
+
     @Override
     public void init(Application application) {
+        gson = createGsonBuilder().create();
     }
 
     @Override
@@ -56,109 +73,131 @@ public class GsonEngine implements ContentTypeEngine {
 
     @Override
     public String toString(Object object) {
-        return gson().toJson(object);
+        return getGson().toJson(object);
+    }
+
+    @Override
+    public void toStream(Object object, OutputStream output, Charset charset) {
+        try {
+            Writer writer = new OutputStreamWriter(output, charset);
+            getGson().toJson(object, writer);
+            writer.flush();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
     }
 
     @Override
     public <T> T fromString(String content, Class<T> classOfT) {
-        return gson().fromJson(content, classOfT);
+        return getGson().fromJson(content, classOfT);
+    }
+
+    @Override
+    public <T> T fromStream(InputStream input, Charset charset, Class<T> classOfT) {
+        return getGson().fromJson(new InputStreamReader(input, charset), classOfT);
+    }
+
+    /**
+     * Returns the {@link Gson} instance used by this engine.
+     * A {@link Gson} instance is thread safe.
+     */
+    public Gson getGson() {
+        Gson gson = this.gson;
+        if (gson == null) {
+            // the engine is used without init, a concurrent duplicate is harmless
+            gson = createGsonBuilder().create();
+            this.gson = gson;
+        }
+
+        return gson;
     }
 
-    private Gson gson() {
+    /**
+     * Creates the builder for the {@link Gson} instance.
+     * Override this method to register other type adapters or to change the serialization options.
+     */
+    protected GsonBuilder createGsonBuilder() {
         return new GsonBuilder()
             .registerTypeAdapter(Date.class, new ISO8601DateTimeTypeAdapter())
             .registerTypeAdapter(Time.class, new ISO8601TimeTypeAdapter())
-            .registerTypeAdapter(java.sql.Date.class, new ISO8601DateTypeAdapter())
-            .create();
+            .registerTypeAdapter(java.sql.Date.class, new ISO8601DateTypeAdapter());
     }
 
     public static class ISO8601DateTypeAdapter implements JsonSerializer<java.sql.Date>, JsonDeserializer<java.sql.Date> {
-        private final DateFormat dateFormat;
-
-        public ISO8601DateTypeAdapter() {
-            dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
-        }
 
         @Override
-        public synchronized JsonElement serialize(java.sql.Date date, Type type,
-                                                  JsonSerializationContext jsonSerializationContext) {
-            synchronized (dateFormat) {
-                String dateFormatAsString = dateFormat.format(date);
-                return new JsonPrimitive(dateFormatAsString);
-            }
+        public JsonElement serialize(java.sql.Date date, Type type, JsonSerializationContext jsonSerializationContext) {
+            return new JsonPrimitive(date.toLocalDate().format(DateTimeFormatter.ISO_LOCAL_DATE));
         }
 
         @Override
-        public synchronized java.sql.Date deserialize(JsonElement jsonElement, Type type,
-                                                      JsonDeserializationContext jsonDeserializationContext) {
+        public java.sql.Date deserialize(JsonElement jsonElement, Type type,
+                                         JsonDeserializationContext jsonDeserializationContext) {
             try {
-                synchronized (dateFormat) {
-                    Date date = dateFormat.parse(jsonElement.getAsString());
-                    return new java.sql.Date((date.getTime() / 1000) * 1000);
-                }
-            } catch (ParseException e) {
+                return java.sql.Date.valueOf(LocalDate.parse(jsonElement.getAsString(), DateTimeFormatter.ISO_LOCAL_DATE));
+            } catch (DateTimeParseException e) {
                 throw new JsonSyntaxException(jsonElement.getAsString(), e);
             }
         }
+
     }
 
     public static class ISO8601TimeTypeAdapter implements JsonSerializer<Time>, JsonDeserializer<Time> {
-        private final DateFormat timeFormat;
+
+        // the epoch day, the same as java.sql.Time
+        private static final LocalDate EPOCH = LocalDate.of(1970, 1, 1);
+
+        private final DateTimeFormatter timeFormatter;
 
         public ISO8601TimeTypeAdapter() {
-            timeFormat = new SimpleDateFormat("HH:mm:ssZ", Locale.US);
+            // DateTimeFormatter is immutable and thread safe
+            timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ssZ", Locale.US).withZone(ZoneId.systemDefault());
         }
 
         @Override
-        public synchronized JsonElement serialize(Time time, Type type,
-                                                  JsonSerializationContext jsonSerializationContext) {
-            synchronized (timeFormat) {
-                String timeFormatAsString = timeFormat.format(time);
-                return new JsonPrimitive(timeFormatAsString);
-            }
+        public JsonElement serialize(Time time, Type type, JsonSerializationContext jsonSerializationContext) {
+            // Time.toInstant() is not supported
+            return new JsonPrimitive(timeFormatter.format(Instant.ofEpochMilli(time.getTime())));
         }
 
         @Override
-        public synchronized Time deserialize(JsonElement jsonElement, Type type,
-                                             JsonDeserializationContext jsonDeserializationContext) {
+        public Time deserialize(JsonElement jsonElement, Type type,
+                                JsonDeserializationContext jsonDeserializationContext) {
             try {
-                synchronized (timeFormat) {
-                    Date date = timeFormat.parse(jsonElement.getAsString());
-                    return new Time((date.getTime() / 1000) * 1000);
-                }
-            } catch (ParseException e) {
+                OffsetTime time = OffsetTime.parse(jsonElement.getAsString(), timeFormatter);
+                return new Time(time.atDate(EPOCH).toInstant().getEpochSecond() * 1000);
+            } catch (DateTimeParseException e) {
                 throw new JsonSyntaxException(jsonElement.getAsString(), e);
             }
         }
+
     }
 
     public static class ISO8601DateTimeTypeAdapter implements JsonSerializer<Date>, JsonDeserializer<Date> {
-        private final DateFormat dateTimeFormat;
+
+        private final DateTimeFormatter dateTimeFormatter;
 
         public ISO8601DateTimeTypeAdapter() {
-            dateTimeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.US);
+            // DateTimeFormatter is immutable and thread safe
+            dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssZ", Locale.US).withZone(ZoneId.systemDefault());
         }
 
         @Override
-        public synchronized JsonElement serialize(Date date, Type type,
-                                                  JsonSerializationContext jsonSerializationContext) {
-            synchronized (dateTimeFormat) {
-                String dateFormatAsString = dateTimeFormat.format(date);
-                return new JsonPrimitive(dateFormatAsString);
-            }
+        public JsonElement serialize(Date date, Type type, JsonSerializationContext jsonSerializationContext) {
+            return new JsonPrimitive(dateTimeFormatter.format(Instant.ofEpochMilli(date.getTime())));
         }
 
         @Override
-        public synchronized Date deserialize(JsonElement jsonElement, Type type,
-                                             JsonDeserializationContext jsonDeserializationContext) {
+        public Date deserialize(JsonElement jsonElement, Type type,
+                                JsonDeserializationContext jsonDeserializationContext) {
             try {
-                synchronized (dateTimeFormat) {
-                    Date date = dateTimeFormat.parse(jsonElement.getAsString());
-                    return new Date((date.getTime() / 1000) * 1000);
-                }
-            } catch (ParseException e) {
+                Instant instant = dateTimeFormatter.parse(jsonElement.getAsString(), Instant::from);
+                return new Date(instant.getEpochSecond() * 1000);
+            } catch (DateTimeParseException e) {
                 throw new JsonSyntaxException(jsonElement.getAsString(), e);
             }
         }
+
     }
+
 }
@@ -19,8 +19,14 @@ import org.kohsuke.MetaInfServices;
 
 import ro.pippo.core.Application;
 import ro.pippo.core.Initializer;
+import ro.pippo.core.PippoRuntimeException;
 
 /**
+ * Registers the {@link GsonEngine}.
+ * To use a customized {@link GsonEngine} (see {@link GsonEngine#createGsonBuilder()}) extend this class,
+ * override {@link #getEngineClass()} and declare your initializer in
+ * <code>META-INF/services/ro.pippo.core.Initializer</code>; the customized engine replaces the default engine.
+ *
  * @author James Moger
  */
 @MetaInfServices(Initializer.class)
@@ -28,7 +34,24 @@ public class GsonInitializer implements Initializer {
 
     @Override
     public void init(Application application) {
-        application.registerContentTypeEngine(GsonEngine.class);
+        Class<? extends GsonEngine> engineClass = getEngineClass();
+        if (engineClass != GsonEngine.class) {
+            // replace the default engine if it's already registered
+            GsonEngine engine;
+            try {
+                engine = engineClass.newInstance();
+            } catch (Exception e) {
+                throw new PippoRuntimeException(e, "Failed to instantiate '{}'", engineClass.getName());
+            }
+            engine.init(application);
+            application.getContentTypeEngines().setContentTypeEngine(engine);
+        } else {
+            application.registerContentTypeEngine(GsonEngine.class);
+        }
+    }
+
+    protected Class<? extends GsonEngine> getEngineClass() {
+        return GsonEngine.class;
     }
 
     @Override
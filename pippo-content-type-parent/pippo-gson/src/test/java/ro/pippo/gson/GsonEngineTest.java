@@ -18,6 +18,7 @@ package ro.pippo.gson;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.sql.Time;
 import java.util.Calendar;
 import java.util.Date;
 
@@ -55,11 +56,29 @@ public class GsonEngineTest extends Assert {
         assertTrue(test.date.equals(result.date));
     }
 
+    @Test
+    public void testSqlDates() {
+        MyTest test = new MyTest();
+        test.sqlDate = java.sql.Date.valueOf("2016-04-21");
+        test.sqlTime = Time.valueOf("07:30:00");
+
+        GsonEngine engine = new GsonEngine();
+        String json = engine.toString(test);
+
+        MyTest result = engine.fromString(json, MyTest.class);
+        assertEquals(test.sqlDate, result.sqlDate);
+        assertEquals(test.sqlTime.toString(), result.sqlTime.toString());
+    }
+
     public static class MyTest {
 
         public String message = "Hooray!";
 
         public Date date = new Date();
 
+        public java.sql.Date sqlDate;
+
+        public Time sqlTime;
+
     }
 }
@@ -15,10 +15,13 @@
  */
 package ro.pippo.jackson;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
 import ro.pippo.core.Application;
@@ -27,10 +30,21 @@ import ro.pippo.core.HttpConstants;
 import ro.pippo.core.PippoRuntimeException;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Base class for ContentTypeEngines based on Jackson.
+ * The engine caches an {@link ObjectReader} and an {@link ObjectWriter} for each type and
+ * the stream methods read and write bytes directly (without an intermediate string).
  *
  * @author James Moger
  */
@@ -38,29 +52,80 @@ public abstract class JacksonBaseEngine implements ContentTypeEngine {
 
     protected ObjectMapper objectMapper;
 
+    private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
     @Override
     public void init(Application application) {
         objectMapper = getObjectMapper();
         objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
         objectMapper.setTimeZone(TimeZone.getDefault());
         objectMapper.registerModule(new AfterburnerModule());
+        // the caller owns the stream (see toStream method)
+        objectMapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+        // the readers and writers are bound to the mapper configuration
+        readers.clear();
+        writers.clear();
     }
 
     protected abstract ObjectMapper getObjectMapper();
 
+    @Override
+    public void warmup(Class<?>... types) {
+        for (Class<?> type : types) {
+            getReader(type);
+            getWriter(type);
+        }
+    }
+
     @Override
     public String toString(Object object) {
         try {
-            return objectMapper.writeValueAsString(object);
+            return getWriter(object).writeValueAsString(object);
         } catch (JsonProcessingException e) {
             throw new PippoRuntimeException(e, "Error serializing object to {}", getContentType());
         }
     }
 
+    @Override
+    public void toStream(Object object, OutputStream output, Charset charset) {
+        try {
+            if (StandardCharsets.UTF_8.equals(charset)) {
+                // the writer encodes directly to UTF-8 bytes
+                getWriter(object).writeValue(output, object);
+            } else {
+                Writer writer = new OutputStreamWriter(output, charset);
+                getWriter(object).writeValue(writer, object);
+                writer.flush();
+            }
+        } catch (JsonProcessingException e) {
+            throw new PippoRuntimeException(e, "Error serializing object to {}", getContentType());
+        } catch (IOException e) {
+            throw new PippoRuntimeException(e, "Failed to write {} document", getContentType());
+        }
+    }
+
     @Override
     public <T> T fromString(String content, Class<T> classOfT) {
         try {
-            return objectMapper.readValue(content, classOfT);
+            return getReader(classOfT).readValue(content);
+        } catch (JsonParseException | JsonMappingException e) {
+            throw new PippoRuntimeException(e, "Error deserializing {}", getContentType());
+        } catch (IOException e) {
+            throw new PippoRuntimeException(e, "Invalid {} document", getContentType());
+        }
+    }
+
+    @Override
+    public <T> T fromStream(InputStream input, Charset charset, Class<T> classOfT) {
+        try {
+            if (StandardCharsets.UTF_8.equals(charset)) {
+                // let the parser decode the bytes
+                return getReader(classOfT).readValue(input);
+            }
+
+            return getReader(classOfT).readValue(new InputStreamReader(input, charset));
         } catch (JsonParseException | JsonMappingException e) {
             throw new PippoRuntimeException(e, "Error deserializing {}", getContentType());
         } catch (IOException e) {
@@ -68,4 +133,43 @@ public abstract class JacksonBaseEngine implements ContentTypeEngine {
         }
     }
 
+    /**
+     * Returns the (cached) reader for a type.
+     * The readers are immutable and thread safe and they keep the resolved deserializer of the type.
+     */
+    protected ObjectReader getReader(Class<?> type) {
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            reader = objectMapper.readerFor(type);
+            ObjectReader existing = readers.putIfAbsent(type, reader);
+            if (existing != null) {
+                reader = existing;
+            }
+        }
+
+        return reader;
+    }
+
+    private ObjectWriter getWriter(Object object) {
+        // a null is serialized by the default writer (to "null")
+        return (object != null) ? getWriter(object.getClass()) : objectMapper.writer();
+    }
+
+    /**
+     * Returns the (cached) writer for a type.
+     * The writers are immutable and thread safe and they keep the resolved serializer of the type.
+     */
+    protected ObjectWriter getWriter(Class<?> type) {
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = objectMapper.writerFor(type);
+            ObjectWriter existing = writers.putIfAbsent(type, writer);
+            if (existing != null) {
+                writer = existing;
+            }
+        }
+
+        return writer;
+    }
+
 }
@@ -18,6 +18,10 @@ package ro.pippo.jackson;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Calendar;
 import java.util.Date;
 
@@ -61,6 +65,68 @@ public abstract class JacksonBaseEngineTest extends Assert {
         assertTrue(test.date.equals(result.date));
     }
 
+    @Test
+    public void testFromStream() {
+        MyTest test = new MyTest();
+        test.message = "Hooray \u00e9!";
+
+        JacksonBaseEngine engine = getEngine();
+        engine.init(null);
+
+        String aString = engine.toString(test);
+
+        InputStream input = new ByteArrayInputStream(aString.getBytes(StandardCharsets.UTF_8));
+        MyTest result = engine.fromStream(input, StandardCharsets.UTF_8, MyTest.class);
+        assertEquals(test.message, result.message);
+
+        input = new ByteArrayInputStream(aString.getBytes(StandardCharsets.UTF_16));
+        result = engine.fromStream(input, StandardCharsets.UTF_16, MyTest.class);
+        assertEquals(test.message, result.message);
+    }
+
+    @Test
+    public void testToStream() throws Exception {
+        MyTest test = new MyTest();
+        test.message = "Hooray \u00e9!";
+
+        JacksonBaseEngine engine = getEngine();
+        engine.init(null);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        engine.toStream(test, output, StandardCharsets.UTF_8);
+
+        MyTest result = engine.fromString(output.toString("UTF-8"), MyTest.class);
+        assertEquals(test.message, result.message);
+    }
+
+    @Test
+    public void testNull() throws Exception {
+        JacksonBaseEngine engine = getEngine();
+        engine.init(null);
+
+        String expected = engine.objectMapper.writeValueAsString(null);
+        assertEquals(expected, engine.toString(null));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        engine.toStream(null, output, StandardCharsets.UTF_8);
+        assertEquals(expected, output.toString("UTF-8"));
+    }
+
+    @Test
+    public void testWarmup() {
+        MyTest test = new MyTest();
+
+        JacksonBaseEngine engine = getEngine();
+        engine.init(null);
+        engine.warmup(MyTest.class);
+
+        assertSame(engine.getReader(MyTest.class), engine.getReader(MyTest.class));
+        assertSame(engine.getWriter(MyTest.class), engine.getWriter(MyTest.class));
+
+        MyTest result = engine.fromString(engine.toString(test), MyTest.class);
+        assertEquals(test.message, result.message);
+    }
+
     public static class MyTest {
 
         public String message = "Hooray!";
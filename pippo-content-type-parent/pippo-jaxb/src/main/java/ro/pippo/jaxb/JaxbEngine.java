@@ -25,11 +25,23 @@ import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * An XmlEngine based on JAXB.
+ * A {@link JAXBContext} is created once for each class and it's cached.
+ * The {@link Marshaller}s and {@link Unmarshaller}s are not thread safe, so they are pooled
+ * (a request borrows one from the pool and returns it when it's done; one that failed is discarded).
  *
  * @author James Moger
  */
@@ -38,6 +50,8 @@ public class JaxbEngine implements ContentTypeEngine {
 
     boolean prettyPrint;
 
+    private final ConcurrentMap<Class<?>, JaxbPool> pools = new ConcurrentHashMap<>();
+
     @Override
     public void init(Application application) {
         prettyPrint = application.getPippoSettings().isDev();
@@ -48,17 +62,35 @@ public class JaxbEngine implements ContentTypeEngine {
         return HttpConstants.ContentType.APPLICATION_XML;
     }
 
+    @Override
+    public void warmup(Class<?>... types) {
+        for (Class<?> type : types) {
+            getPool(type);
+        }
+    }
+
     @Override
     public String toString(Object object) {
+        StringWriter writer = new StringWriter();
+        JaxbPool pool = getPool(object.getClass());
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(object.getClass());
-            Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-            jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, prettyPrint);
+            Marshaller marshaller = pool.borrowMarshaller(StandardCharsets.UTF_8);
+            marshaller.marshal(object, writer);
+            pool.returnMarshaller(marshaller);
+        } catch (JAXBException e) {
+            throw new PippoRuntimeException(e, "Failed to serialize '{}' to XML'", object.getClass().getName());
+        }
 
-            StringWriter writer = new StringWriter();
-            jaxbMarshaller.marshal(object, writer);
+        return writer.toString();
+    }
 
-            return writer.toString();
+    @Override
+    public void toStream(Object object, OutputStream output, Charset charset) {
+        JaxbPool pool = getPool(object.getClass());
+        try {
+            Marshaller marshaller = pool.borrowMarshaller(charset);
+            marshaller.marshal(object, output);
+            pool.returnMarshaller(marshaller);
         } catch (JAXBException e) {
             throw new PippoRuntimeException(e, "Failed to serialize '{}' to XML'", object.getClass().getName());
         }
@@ -67,14 +99,100 @@ public class JaxbEngine implements ContentTypeEngine {
     @Override
     @SuppressWarnings("unchecked")
     public <T> T fromString(String content, Class<T> classOfT) {
+        JaxbPool pool = getPool(classOfT);
         try (StringReader reader = new StringReader(content)) {
-            JAXBContext jaxbContext = JAXBContext.newInstance(classOfT);
-            Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
+            Unmarshaller unmarshaller = pool.borrowUnmarshaller();
+            T result = (T) unmarshaller.unmarshal(reader);
+            pool.returnUnmarshaller(unmarshaller);
 
-            return (T) jaxbUnmarshaller.unmarshal(reader);
+            return result;
         } catch (JAXBException e) {
             throw new PippoRuntimeException(e, "Failed to deserialize content to '{}'", classOfT.getName());
         }
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T fromStream(InputStream input, Charset charset, Class<T> classOfT) {
+        JaxbPool pool = getPool(classOfT);
+        try {
+            Unmarshaller unmarshaller = pool.borrowUnmarshaller();
+            // for UTF-8 (the default charset of a request) the xml parser detects the encoding
+            // from the xml declaration, another charset is declared by the request and it wins
+            T result = StandardCharsets.UTF_8.equals(charset)
+                ? (T) unmarshaller.unmarshal(input)
+                : (T) unmarshaller.unmarshal(new InputStreamReader(input, charset));
+            pool.returnUnmarshaller(unmarshaller);
+
+            return result;
+        } catch (JAXBException e) {
+            throw new PippoRuntimeException(e, "Failed to deserialize content to '{}'", classOfT.getName());
+        }
+    }
+
+    private JaxbPool getPool(Class<?> type) {
+        JaxbPool pool = pools.get(type);
+        if (pool == null) {
+            // creating a context is expensive, do it outside the map lock;
+            // a concurrent duplicate is discarded
+            try {
+                pool = new JaxbPool(JAXBContext.newInstance(type), prettyPrint);
+            } catch (JAXBException e) {
+                throw new PippoRuntimeException(e, "Failed to create JAXB context for '{}'", type.getName());
+            }
+
+            JaxbPool existing = pools.putIfAbsent(type, pool);
+            if (existing != null) {
+                pool = existing;
+            }
+        }
+
+        return pool;
+    }
+
+    /**
+     * The (thread safe) {@link JAXBContext} of a class with its idle marshallers and unmarshallers.
+     * The pools grow up to the number of concurrent requests for the class.
+     */
+    private static class JaxbPool {
+
+        private final JAXBContext context;
+        private final boolean prettyPrint;
+        private final Queue<Marshaller> marshallers = new ConcurrentLinkedQueue<>();
+        private final Queue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<>();
+
+        private JaxbPool(JAXBContext context, boolean prettyPrint) {
+            this.context = context;
+            this.prettyPrint = prettyPrint;
+        }
+
+        private Marshaller borrowMarshaller(Charset charset) throws JAXBException {
+            Marshaller marshaller = marshallers.poll();
+            if (marshaller == null) {
+                marshaller = context.createMarshaller();
+                marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, prettyPrint);
+            }
+            // the encoding is written in the xml declaration, set it on every borrow
+            // because a pooled marshaller keeps the encoding of its previous use
+            marshaller.setProperty(Marshaller.JAXB_ENCODING, charset.name());
+
+            return marshaller;
+        }
+
+        private void returnMarshaller(Marshaller marshaller) {
+            marshallers.offer(marshaller);
+        }
+
+        private Unmarshaller borrowUnmarshaller() throws JAXBException {
+            Unmarshaller unmarshaller = unmarshallers.poll();
+
+            return (unmarshaller != null) ? unmarshaller : context.createUnmarshaller();
+        }
+
+        private void returnUnmarshaller(Unmarshaller unmarshaller) {
+            unmarshallers.offer(unmarshaller);
+        }
+
+    }
+
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.jaxb;
+
+import org.junit.Test;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JaxbEngineTest {
+
+    private static final String NAME = "Pippo Pâté";
+
+    @Test
+    public void testString() {
+        JaxbEngine engine = new JaxbEngine();
+
+        // the second round trip uses the pooled marshaller and unmarshaller
+        for (int i = 0; i < 2; i++) {
+            String xml = engine.toString(Person.create());
+            assertTrue(xml, xml.contains("encoding=\"UTF-8\""));
+            assertTrue(xml, xml.contains("<person id=\"7\">"));
+
+            assertPerson(engine.fromString(xml, Person.class));
+        }
+    }
+
+    @Test
+    public void testStreamWithCharset() {
+        JaxbEngine engine = new JaxbEngine();
+        Charset latin1 = StandardCharsets.ISO_8859_1;
+
+        byte[] bytes = toBytes(engine, latin1);
+        String xml = new String(bytes, latin1);
+        assertTrue(xml, xml.contains("encoding=\"ISO-8859-1\""));
+        assertTrue(xml, xml.contains(NAME));
+        // 'â' and 'é' are single bytes in ISO-8859-1
+        assertEquals(xml.length(), bytes.length);
+
+        assertPerson(engine.fromStream(new ByteArrayInputStream(bytes), latin1, Person.class));
+
+        // the pooled marshaller doesn't keep the encoding of its previous use
+        xml = new String(toBytes(engine, StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        assertTrue(xml, xml.contains("encoding=\"UTF-8\""));
+        assertTrue(xml, xml.contains(NAME));
+
+        assertPerson(engine.fromStream(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8, Person.class));
+    }
+
+    @Test
+    public void testConcurrentRoundTrips() throws Exception {
+        JaxbEngine engine = new JaxbEngine();
+        engine.warmup(Person.class);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Person>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(executor.submit(() -> engine.fromString(engine.toString(Person.create()), Person.class)));
+            }
+
+            for (Future<Person> future : futures) {
+                assertPerson(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static byte[] toBytes(JaxbEngine engine, Charset charset) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        engine.toStream(Person.create(), output, charset);
+
+        return output.toByteArray();
+    }
+
+    private static void assertPerson(Person person) {
+        assertEquals(7, person.id);
+        assertEquals(NAME, person.name);
+    }
+
+    @XmlRootElement
+    public static class Person {
+
+        @XmlAttribute
+        int id;
+
+        @XmlElement
+        String name;
+
+        static Person create() {
+            Person person = new Person();
+            person.id = 7;
+            person.name = NAME;
+
+            return person;
+        }
+
+    }
+
+}
@@ -20,17 +20,35 @@ import org.yaml.snakeyaml.Yaml;
 import ro.pippo.core.Application;
 import ro.pippo.core.ContentTypeEngine;
 import ro.pippo.core.HttpConstants;
+import ro.pippo.core.PippoRuntimeException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * An YAML content-type engine based on SnakeYAML.
+ * A {@link Yaml} instance is not thread safe, so the engine keeps a pool of instances
+ * (a request borrows one from the pool and returns it when it's done).
+ * The instances are reused, so they keep the introspection metadata of the already used types.
  *
  * @author James Moger
  */
 @MetaInfServices(ContentTypeEngine.class)
 public class SnakeYamlEngine implements ContentTypeEngine {
 
+    private final Queue<Yaml> pool = new ConcurrentLinkedQueue<>();
+
     @Override
     public void init(Application application) {
+        // create the first instance at startup
+        pool.offer(createYaml());
     }
 
     @Override
@@ -40,12 +58,60 @@ public class SnakeYamlEngine implements ContentTypeEngine {
 
     @Override
     public String toString(Object object) {
-        return new Yaml().dump(object);
+        Yaml yaml = borrowYaml();
+        try {
+            return yaml.dump(object);
+        } finally {
+            pool.offer(yaml);
+        }
+    }
+
+    @Override
+    public void toStream(Object object, OutputStream output, Charset charset) {
+        Yaml yaml = borrowYaml();
+        try {
+            Writer writer = new OutputStreamWriter(output, charset);
+            yaml.dump(object, writer);
+            writer.flush();
+        } catch (IOException e) {
+            throw new PippoRuntimeException(e, "Failed to write '{}' to YAML", object.getClass().getName());
+        } finally {
+            pool.offer(yaml);
+        }
     }
 
     @Override
     public <T> T fromString(String content, Class<T> classOfT) {
-        return (T) new Yaml().load(content);
+        Yaml yaml = borrowYaml();
+        try {
+            return (T) yaml.load(content);
+        } finally {
+            pool.offer(yaml);
+        }
+    }
+
+    @Override
+    public <T> T fromStream(InputStream input, Charset charset, Class<T> classOfT) {
+        Yaml yaml = borrowYaml();
+        try {
+            return (T) yaml.load(new InputStreamReader(input, charset));
+        } finally {
+            pool.offer(yaml);
+        }
+    }
+
+    /**
+     * Creates a {@link Yaml} instance.
+     * Override this method to customize the representer, the constructor or the dumper options.
+     */
+    protected Yaml createYaml() {
+        return new Yaml();
+    }
+
+    private Yaml borrowYaml() {
+        Yaml yaml = pool.poll();
+
+        return (yaml != null) ? yaml : createYaml();
     }
 
 }
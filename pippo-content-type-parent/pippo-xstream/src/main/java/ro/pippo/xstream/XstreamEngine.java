@@ -19,43 +19,106 @@ import org.kohsuke.MetaInfServices;
 import ro.pippo.core.Application;
 import ro.pippo.core.ContentTypeEngine;
 import ro.pippo.core.HttpConstants;
+import ro.pippo.core.PippoRuntimeException;
 
 import com.thoughtworks.xstream.XStream;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * An XmlEngine based on XStream.
+ * An {@link XStream} instance is created (with the annotations of its type processed) for each
+ * serialized or deserialized type and it's shared by all requests for that type;
+ * after configuration an {@link XStream} instance is thread safe.
+ * The annotations are not auto-detected on a shared instance (XStream's auto-detection is not thread safe),
+ * they are processed when the instance of a type is created.
+ * Use {@link #warmup(Class[])} at startup to create the instances before the first request.
  *
  * @author James Moger
  */
 @MetaInfServices(ContentTypeEngine.class)
 public class XstreamEngine implements ContentTypeEngine {
 
-	@Override
-	public void init(Application application) {
-	}
+    private final ConcurrentMap<Class<?>, XStream> xstreams = new ConcurrentHashMap<>();
+
+    @Override
+    public void init(Application application) {
+        xstreams.clear();
+    }
 
     @Override
     public String getContentType() {
         return HttpConstants.ContentType.APPLICATION_XML;
     }
 
-    private XStream xstream() {
+    @Override
+    public void warmup(Class<?>... types) {
+        for (Class<?> type : types) {
+            xstream(type);
+        }
+    }
+
+    @Override
+    public String toString(Object object) {
+        return xstream(object.getClass()).toXML(object);
+    }
+
+    @Override
+    public void toStream(Object object, OutputStream output, Charset charset) {
+        try {
+            Writer writer = new OutputStreamWriter(output, charset);
+            xstream(object.getClass()).toXML(object, writer);
+            writer.flush();
+        } catch (IOException e) {
+            throw new PippoRuntimeException(e, "Failed to write '{}' to XML", object.getClass().getName());
+        }
+    }
+
+    @Override
+    public <T> T fromString(String content, Class<T> classOfT) {
+        return (T) xstream(classOfT).fromXML(content);
+    }
+
+    @Override
+    public <T> T fromStream(InputStream input, Charset charset, Class<T> classOfT) {
+        return (T) xstream(classOfT).fromXML(new InputStreamReader(input, charset));
+    }
+
+    /**
+     * Creates an {@link XStream} instance (the annotations of the type are processed after this method).
+     * Override this method to register other converters or aliases.
+     */
+    protected XStream createXStream() {
         XStream xstream = new XStream();
-        // allow annotations on models for maximum flexibility
-        xstream.autodetectAnnotations(true);
         // prevent xstream from creating complex XML graphs
         xstream.setMode(XStream.NO_REFERENCES);
+
         return xstream;
     }
 
-	@Override
-	public String toString(Object object) {
-        return xstream().toXML(object);
-	}
+    private XStream xstream(Class<?> type) {
+        XStream xstream = xstreams.get(type);
+        if (xstream == null) {
+            // configure the instance before it's shared, a concurrent duplicate is discarded
+            xstream = createXStream();
+            // allow annotations on models for maximum flexibility
+            xstream.processAnnotations(type);
+
+            XStream existing = xstreams.putIfAbsent(type, xstream);
+            if (existing != null) {
+                xstream = existing;
+            }
+        }
 
-	@Override
-	public <T> T fromString(String content, Class<T> classOfT) {
-		return (T) xstream().fromXML(content);
-	}
+        return xstream;
+    }
 
 }
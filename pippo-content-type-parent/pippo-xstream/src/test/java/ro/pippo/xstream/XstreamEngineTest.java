@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.xstream;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class XstreamEngineTest {
+
+    @Test
+    public void testAnnotationsWithoutWarmup() {
+        XstreamEngine engine = new XstreamEngine();
+        String xml = engine.toString(Order.create());
+
+        assertTrue(xml, xml.startsWith("<order id=\"7\">"));
+        assertTrue(xml, xml.contains("<item>"));
+
+        Order order = engine.fromString(xml, Order.class);
+        assertEquals(7, order.id);
+        assertEquals(2, order.items.size());
+        assertEquals("apple", order.items.get(0).name);
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        XstreamEngine engine = new XstreamEngine();
+        engine.warmup(Order.class);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        engine.toStream(Order.create(), output, StandardCharsets.UTF_8);
+
+        Order order = engine.fromStream(new ByteArrayInputStream(output.toByteArray()), StandardCharsets.UTF_8, Order.class);
+        assertEquals(7, order.id);
+        assertEquals("pear", order.items.get(1).name);
+    }
+
+    @XStreamAlias("order")
+    public static class Order {
+
+        @XStreamAsAttribute
+        int id;
+
+        List<Item> items = new ArrayList<>();
+
+        static Order create() {
+            Order order = new Order();
+            order.id = 7;
+            order.items.add(new Item("apple"));
+            order.items.add(new Item("pear"));
+
+            return order;
+        }
+
+    }
+
+    @XStreamAlias("item")
+    public static class Item {
+
+        String name;
+
+        Item(String name) {
+            this.name = name;
+        }
+
+    }
+
+}
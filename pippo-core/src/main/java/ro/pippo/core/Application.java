@@ -17,7 +17,10 @@ package ro.pippo.core;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ro.pippo.core.route.ClasspathResourceHandler;
+import ro.pippo.core.route.CompiledResourceHandler;
 import ro.pippo.core.route.DefaultRouter;
+import ro.pippo.core.route.ResourceManifest;
 import ro.pippo.core.route.Route;
 import ro.pippo.core.route.Routing;
 import ro.pippo.core.route.RouteContext;
@@ -31,9 +34,12 @@ import ro.pippo.core.util.MimeTypes;
 import ro.pippo.core.util.ServiceLocator;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Base class for all Pippo applications.
@@ -61,6 +67,7 @@ public class Application implements Routing {
 
     private String uploadLocation = System.getProperty("java.io.tmpdir");
     private long maximumUploadSize = -1L;
+    private long maximumBodySize = -1L;
 
     private RoutePreDispatchListenerList routePreDispatchListeners;
     private RoutePostDispatchListenerList routePostDispatchListeners;
@@ -95,6 +102,36 @@ public class Application implements Routing {
         }
 
         onInit();
+
+        // compile the templates at boot (and report the broken templates) instead of on the first requests
+        if (templateEngine != null && pippoSettings.getBoolean(PippoConstants.SETTING_TEMPLATE_WARMUP, pippoSettings.isProd())) {
+            new TemplatePrecompiler(templateEngine, pippoSettings).precompile();
+        }
+
+        // version the classpath resources by the fingerprints of their content
+        if (pippoSettings.getBoolean(PippoConstants.SETTING_HTTP_RESOURCE_MANIFEST, pippoSettings.isProd())) {
+            buildResourceManifests();
+        }
+    }
+
+    private void buildResourceManifests() {
+        Set<ClasspathResourceHandler> resourceHandlers = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Route route : getRouter().getRoutes()) {
+            if (route.getRouteHandler() instanceof ClasspathResourceHandler) {
+                resourceHandlers.add((ClasspathResourceHandler) route.getRouteHandler());
+            }
+        }
+
+        for (ClasspathResourceHandler resourceHandler : resourceHandlers) {
+            // a compiled resource depends on other resources (the imports)
+            if (resourceHandler.isVersioned() && resourceHandler.getManifest() == null
+                && !(resourceHandler instanceof CompiledResourceHandler)) {
+                ResourceManifest manifest = ResourceManifest.build(resourceHandler.getClass().getClassLoader(),
+                    resourceHandler.getResourceBasePath());
+                log.info("Use a manifest with {} resources for '{}'", manifest.size(), resourceHandler.getUriPattern());
+                resourceHandler.useManifest(manifest);
+            }
+        }
     }
 
     public final void destroy() {
@@ -275,6 +312,21 @@ public class Application implements Routing {
         this.maximumUploadSize = maximumUploadSize;
     }
 
+    /**
+     * Gets the maximum size (in bytes) allowed for a request body.
+     * A larger body is rejected with status 413 before it's read.
+     * A negative value means no limit.
+     *
+     * @return
+     */
+    public long getMaximumBodySize() {
+        return maximumBodySize;
+    }
+
+    public void setMaximumBodySize(long maximumBodySize) {
+        this.maximumBodySize = maximumBodySize;
+    }
+
     public RoutePreDispatchListenerList getRoutePreDispatchListeners() {
         if (routePreDispatchListeners == null) {
             routePreDispatchListeners = new RoutePreDispatchListenerList();
@@ -15,6 +15,12 @@
  */
 package ro.pippo.core;
 
+import ro.pippo.core.util.IoUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
 
 /**
  * @author James Moger
@@ -27,6 +33,44 @@ public interface ContentTypeEngine {
 
     String toString(Object object);
 
+    /**
+     * Prepares the engine for the specified types (for example processes their annotations),
+     * so the first request that uses these types is not slower than the next ones.
+     * It's called at application startup (see {@link ContentTypeEngines#warmup(Class[])}).
+     * The default implementation does nothing.
+     */
+    default void warmup(Class<?>... types) {
+    }
+
+    /**
+     * Writes an object (encoded with the charset) to a stream (for example the response output stream).
+     * The default implementation writes the result of {@link #toString(Object)}, the engines
+     * that can serialize to a stream should override this method to avoid building the string.
+     * The stream is not flushed and not closed (the caller owns it); an engine that writes through
+     * a {@link java.io.Writer} flushes only its writer.
+     */
+    default void toStream(Object object, OutputStream output, Charset charset) {
+        try {
+            output.write(toString(object).getBytes(charset));
+        } catch (IOException e) {
+            throw new PippoRuntimeException(e, "Failed to write '{}'", object.getClass().getName());
+        }
+    }
+
     <T> T fromString(String content, Class<T> classOfT);
 
+    /**
+     * Reads an object from a stream (for example the request body).
+     * The default implementation reads the stream in a string and delegates
+     * to {@link #fromString(String, Class)}, the engines that can parse a stream
+     * should override this method to avoid the intermediate copy.
+     */
+    default <T> T fromStream(InputStream input, Charset charset, Class<T> classOfT) {
+        try {
+            return fromString(IoUtils.toString(input, charset), classOfT);
+        } catch (IOException e) {
+            throw new PippoRuntimeException(e, "Failed to read content for '{}'", classOfT.getName());
+        }
+    }
+
 }
@@ -20,10 +20,14 @@ import org.slf4j.LoggerFactory;
 import ro.pippo.core.util.StringUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Container for registered content type engines. The main purpose of this
@@ -36,13 +40,19 @@ public class ContentTypeEngines {
 
     private static final Logger log = LoggerFactory.getLogger(ContentTypeEngines.class);
 
+    private static final int MAX_RESOLUTIONS = 256;
+
     private final Map<String, ContentTypeEngine> engines;
 
     private final Map<String, ContentTypeEngine> suffixes;
 
+    // raw content type or accept header -> engine (or empty), bounded, lock free reads
+    private final Map<String, Optional<ContentTypeEngine>> resolutions;
+
     public ContentTypeEngines() {
         this.engines = new TreeMap<>();
         this.suffixes = new TreeMap<>();
+        this.resolutions = new ConcurrentHashMap<>();
     }
 
     /**
@@ -52,15 +62,7 @@ public class ContentTypeEngines {
      * @return true if there is an engine for the content type
      */
     public boolean hasContentTypeEngine(String contentTypeOrSuffix) {
-        String sanitizedTypes = sanitizeContentTypes(contentTypeOrSuffix);
-        String[] types = sanitizedTypes.split(",");
-        for (String type : types) {
-            if (engines.containsKey(type)) {
-                return true;
-            }
-        }
-
-        return suffixes.containsKey(contentTypeOrSuffix.toLowerCase());
+        return getContentTypeEngine(contentTypeOrSuffix) != null;
     }
 
     /**
@@ -105,6 +107,22 @@ public class ContentTypeEngines {
         }
     }
 
+    /**
+     * Warms up all registered engines for the specified types.
+     * Call this method from {@link Application#onInit()} with the types used by your routes.
+     *
+     * @param types
+     */
+    public void warmup(Class<?>... types) {
+        Map<ContentTypeEngine, Boolean> distinctEngines = new IdentityHashMap<>();
+        for (ContentTypeEngine engine : engines.values()) {
+            if (distinctEngines.put(engine, Boolean.TRUE) == null) {
+                log.debug("Warmup '{}'", engine.getClass().getName());
+                engine.warmup(types);
+            }
+        }
+    }
+
     /**
      * Returns the first matching content type engine for a content type suffix (json, xml, yaml), a
      * simple content type (application/json) or a complex accept header like:
@@ -112,6 +130,9 @@ public class ContentTypeEngines {
      * <pre>
      * text/html,application/xhtml+xml,application/xml;q=0.9,image/webp
      * </pre>
+     * The types of an accept header are tried in the order of their quality (q) values.
+     * The result is cached by the raw value, the clients send only a few distinct accept headers
+     * (the cache is cleared when it's full).
      *
      * @param contentTypeOrSuffix
      * @return null or the first matching content type engine
@@ -121,16 +142,75 @@ public class ContentTypeEngines {
             return null;
         }
 
-        String sanitizedTypes = sanitizeContentTypes(contentTypeOrSuffix);
-        String[] types = sanitizedTypes.split(",");
-        for (String type : types) {
-            ContentTypeEngine engine = engines.get(type);
-            if (engine != null) {
-                return engine;
+        Optional<ContentTypeEngine> engine = resolutions.get(contentTypeOrSuffix);
+        if (engine == null) {
+            engine = Optional.ofNullable(resolveContentTypeEngine(contentTypeOrSuffix));
+            if (resolutions.size() >= MAX_RESOLUTIONS) {
+                // many distinct values (probably junk), start over instead of growing
+                resolutions.clear();
             }
+            resolutions.put(contentTypeOrSuffix, engine);
         }
 
-        return suffixes.get(contentTypeOrSuffix.toLowerCase());
+        return engine.orElse(null);
+    }
+
+    /**
+     * Parses a content type or an accept header and returns the media types ordered by their
+     * quality (q) value, without parameters. The types with the same quality keep their order and
+     * the types with quality zero (not acceptable) are removed.
+     * <p/>
+     * For <code>application/xml;q=0.9, application/json, text/plain;q=0</code> it returns
+     * <code>[application/json, application/xml]</code>.
+     *
+     * @param contentType
+     * @return the list of media types
+     */
+    public static List<String> getAcceptTypes(String contentType) {
+        if (StringUtils.isNullOrEmpty(contentType)) {
+            return Collections.emptyList();
+        }
+
+        List<String> types = new ArrayList<>();
+        List<Float> qualities = new ArrayList<>();
+        boolean sorted = true;
+        for (String value : contentType.split(",")) {
+            String type = value;
+            float quality = 1;
+            int index = value.indexOf(';');
+            if (index != -1) {
+                type = value.substring(0, index);
+                quality = getQuality(value.substring(index + 1));
+            }
+
+            type = type.trim();
+            if (type.isEmpty() || (quality <= 0)) {
+                continue;
+            }
+
+            if (!qualities.isEmpty() && (quality > qualities.get(qualities.size() - 1))) {
+                sorted = false;
+            }
+            types.add(type);
+            qualities.add(quality);
+        }
+
+        if (!sorted) {
+            // stable sort by quality (descending)
+            Integer[] indexes = new Integer[types.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = i;
+            }
+            Arrays.sort(indexes, (i, j) -> Float.compare(qualities.get(j), qualities.get(i)));
+
+            List<String> sortedTypes = new ArrayList<>(types.size());
+            for (Integer i : indexes) {
+                sortedTypes.add(types.get(i));
+            }
+            types = sortedTypes;
+        }
+
+        return types;
     }
 
     /**
@@ -145,41 +225,38 @@ public class ContentTypeEngines {
 
         engines.put(engine.getContentType(), engine);
         suffixes.put(suffix.toLowerCase(), engine);
+        resolutions.clear();
 
         log.debug("'{}' content engine is '{}'", engine.getContentType(), engine.getClass().getName());
     }
 
-    /**
-     * Cleans a complex content-type or accept header value by removing the
-     * quality scores.
-     * <p/>
-     * <pre>
-     * text/html,application/xhtml+xml,application/xml;q=0.9,image/webp
-     * </pre>
-     *
-     * @param contentType
-     * @return null or the first matching content type engine
-     */
-    protected String sanitizeContentTypes(String contentType) {
-        if (StringUtils.isNullOrEmpty(contentType)) {
-            return null;
+    private ContentTypeEngine resolveContentTypeEngine(String contentTypeOrSuffix) {
+        for (String type : getAcceptTypes(contentTypeOrSuffix)) {
+            ContentTypeEngine engine = engines.get(type);
+            if (engine != null) {
+                return engine;
+            }
         }
 
-        StringBuilder sb = new StringBuilder();
-        String[] types = contentType.split(",");
-        for (String type : types) {
-            if (type.contains(";")) {
-                // drop ;q=0.8 quality scores
-                type = type.substring(0, type.indexOf(';'));
-            }
+        return suffixes.get(contentTypeOrSuffix.toLowerCase());
+    }
 
-            sb.append(type).append(',');
+    /**
+     * Returns the q parameter from the parameters of a media type (1 if it's missing or invalid).
+     */
+    private static float getQuality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            int index = parameter.indexOf('=');
+            if ((index != -1) && "q".equals(parameter.substring(0, index).trim())) {
+                try {
+                    return Float.parseFloat(parameter.substring(index + 1).trim());
+                } catch (NumberFormatException e) {
+                    return 1;
+                }
+            }
         }
 
-        // trim trailing comma
-        sb.setLength(sb.length() - 1);
-
-        return sb.toString();
+        return 1;
     }
 
 }
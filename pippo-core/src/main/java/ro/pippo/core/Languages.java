@@ -21,9 +21,12 @@ import ro.pippo.core.route.RouteContext;
 import ro.pippo.core.util.StringUtils;
 
 import javax.servlet.http.Cookie;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -134,6 +137,22 @@ public class Languages {
         return pippoSettings.getStrings(PippoConstants.SETTING_APPLICATION_LANGUAGES);
     }
 
+    /**
+     * Returns the locales of the registered languages (the locale of the default language is the first).
+     * A template engine can use them to precompile the localized variants of a template.
+     *
+     * @return a list of locales
+     */
+    public List<Locale> getRegisteredLocales() {
+        Set<Locale> locales = new LinkedHashSet<>();
+        locales.add(getLocaleOrDefault((String) null));
+        for (String language : getRegisteredLanguages()) {
+            locales.add(getLocaleOrDefault(language));
+        }
+
+        return new ArrayList<>(locales);
+    }
+
     /**
      * Clears the application language cookie.
      *
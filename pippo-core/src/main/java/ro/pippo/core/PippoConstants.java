@@ -43,10 +43,20 @@ public final class PippoConstants {
 
     public static final String SETTING_HTTP_USE_ETAG = "http.useETag";
 
+    public static final String SETTING_HTTP_RESOURCE_MANIFEST = "http.resourceManifest";
+
     public static final String SETTING_MIMETYPE_PREFIX = "mimetype.";
 
     public static final String SETTING_TEMPLATE_PATH_PREFIX = "template.pathPrefix";
 
+    public static final String SETTING_TEMPLATE_BUFFER_SIZE = "template.bufferSize";
+
+    public static final String SETTING_TEMPLATE_CACHE_SIZE = "template.cacheSize";
+
+    public static final String SETTING_TEMPLATE_STRING_CACHE_SIZE = "template.stringCacheSize";
+
+    public static final String SETTING_TEMPLATE_WARMUP = "template.warmup";
+
     public static final String SETTING_SERVER_PORT = "server.port";
 
     public static final String SETTING_SERVER_HOST = "server.host";
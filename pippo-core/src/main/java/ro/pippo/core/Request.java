@@ -22,16 +22,23 @@ import ro.pippo.core.route.RouteDispatcher;
 import ro.pippo.core.util.ClassUtils;
 import ro.pippo.core.util.CookieUtils;
 import ro.pippo.core.util.IoUtils;
+import ro.pippo.core.util.LimitedInputStream;
 import ro.pippo.core.util.StringUtils;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 import javax.servlet.http.Part;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -39,7 +46,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 
 /**
  * Represents a server-side HTTP request. An instance of this class is created
@@ -53,9 +59,11 @@ public final class Request {
 
     private HttpServletRequest httpServletRequest;
     private ContentTypeEngines contentTypeEngines;
-    private Map<String, ParameterValue> parameters; // query&post parameters
-    private Map<String, ParameterValue> pathParameters; // path parameters
-    private Map<String, ParameterValue> allParameters; // parameters + pathParameters
+    private long maximumBodySize;
+    private Map<String, ParameterValue> parameters; // query&post parameters (lazy)
+    private Map<String, String> pathParameterValues; // path parameters (as returned by router)
+    private Map<String, ParameterValue> pathParameters; // path parameters (lazy)
+    private Map<String, ParameterValue> allParameters; // parameters + pathParameters (lazy)
     private Map<String, FileItem> files;
     private Session session;
     private String applicationPath;
@@ -65,45 +73,52 @@ public final class Request {
     private String acceptType;
     private String contentType;
     private String body; // cache
+    private boolean bodyConsumed; // the body stream was returned by getBodyAsStream
 
     public Request(HttpServletRequest servletRequest, Application application) {
         this.httpServletRequest = servletRequest;
         this.contentTypeEngines = application.getContentTypeEngines();
+        this.maximumBodySize = application.getMaximumBodySize();
 
         applicationPath = application.getRouter().getApplicationPath();
 
-        // fill (query&post) parameters if any
-        initParameters();
+        // the (query&post) parameters are parsed on first access (see getQueryParameters method)
 
         // empty path parameters for now (see setPathParameters method)
-        pathParameters = Collections.unmodifiableMap(new HashMap<String, ParameterValue>());
-
-        // init all parameters
-        initAllParameters();
+        pathParameterValues = Collections.emptyMap();
     }
 
     /**
      * Returns all parameters (query, post, path).
      */
     public Map<String, ParameterValue> getParameters() {
+        if (allParameters == null) {
+            initAllParameters();
+        }
+
         return allParameters;
     }
 
     /**
      * Returns one parameter value.
+     * A path parameter hides a query parameter with the same name.
      */
     public ParameterValue getParameter(String name) {
-        if (!getParameters().containsKey(name)) {
-            return new ParameterValue();
+        if (pathParameterValues.containsKey(name)) {
+            return getPathParameter(name);
         }
 
-        return getParameters().get(name);
+        return getQueryParameter(name);
     }
 
     /**
      * Returns all query&post parameters.
      */
     public Map<String, ParameterValue> getQueryParameters() {
+        if (parameters == null) {
+            initParameters();
+        }
+
         return parameters;
     }
 
@@ -122,6 +137,10 @@ public final class Request {
      * Returns all path parameters.
      */
     public Map<String, ParameterValue> getPathParameters() {
+        if (pathParameters == null) {
+            initPathParameters();
+        }
+
         return pathParameters;
     }
 
@@ -129,97 +148,129 @@ public final class Request {
      * Returns one path parameter.
      */
     public ParameterValue getPathParameter(String name) {
-        if (!getPathParameters().containsKey(name)) {
+        if (pathParameters != null) {
+            ParameterValue value = pathParameters.get(name);
+
+            return (value != null) ? value : new ParameterValue();
+        }
+
+        // read the value without creating the path parameters map
+        if (!pathParameterValues.containsKey(name)) {
             return new ParameterValue();
         }
 
-        return getPathParameters().get(name);
+        return new ParameterValue(pathParameterValues.get(name));
     }
 
     private void initParameters() {
-        Map<String, Map<Integer, String>> arrays = new HashMap<>();
+        Map<String, String[]> arrays = null;
         Map<String, ParameterValue> tmp = new HashMap<>();
         Enumeration<String> names = httpServletRequest.getParameterNames();
         while (names.hasMoreElements()) {
             String name = names.nextElement();
+            String[] values = httpServletRequest.getParameterValues(name);
 
-            if (name.matches("(.+)\\[(\\d+)\\]")) {
-                // support indexed parameter arrays e.g. setting[0], setting[1], setting[2]
-                int brk = name.indexOf('[');
-                String base = name.substring(0, brk);
+            int index = getArrayIndex(name);
+            if (index == -1) {
+                tmp.put(name, new ParameterValue(values));
+                continue;
+            }
 
-                // try-catch for requests in the form //server/?a[123123123123123123123123123123]
-                try {
-                    int idx = Integer.parseInt(name.substring(brk + 1, name.length() - 1));
-                    if (!arrays.containsKey(base)) {
-                        // use an ordered map because we can not rely on parameter
-                        // order from the servlet container nor from the request
-                        arrays.put(base, new TreeMap<Integer, String>());
-                    }
+            // support indexed parameter arrays e.g. setting[0], setting[1], setting[2]
+            // we can not rely on parameter order from the servlet container nor from the request
+            if (arrays == null) {
+                arrays = new HashMap<>();
+            }
+            String base = name.substring(0, name.indexOf('['));
+            String[] array = arrays.get(base);
+            if (array == null) {
+                array = new String[index + 1];
+            } else if (index >= array.length) {
+                array = Arrays.copyOf(array, index + 1);
+            }
+            array[index] = values[0];
+            arrays.put(base, array);
+        }
 
-                    Map<Integer, String> map = arrays.get(base);
-                    String value = httpServletRequest.getParameterValues(name)[0];
-                    map.put(idx, value);
-                } catch (NumberFormatException e) {
-                    // add as a simple parameter
-                    String[] values = httpServletRequest.getParameterValues(name);
-                    tmp.put(name, new ParameterValue(values));
-                }
-            } else {
-                String[] values = httpServletRequest.getParameterValues(name);
-                tmp.put(name, new ParameterValue(values));
+        if (arrays != null) {
+            for (Map.Entry<String, String[]> entry : arrays.entrySet()) {
+                tmp.put(entry.getKey(), new ParameterValue(entry.getValue()));
             }
         }
 
-        for (Map.Entry<String, Map<Integer, String>> entry : arrays.entrySet()) {
-            // identify maximum specified index
-            int maxIndex = 0;
-            for (int index : entry.getValue().keySet()) {
-                if (index > maxIndex) {
-                    maxIndex = index;
-                }
+        parameters = Collections.unmodifiableMap(tmp);
+    }
+
+    /**
+     * Returns the index for an indexed parameter name (e.g. "setting[2]" returns 2)
+     * or -1 if the name is not an indexed name or the index is too big.
+     */
+    private static int getArrayIndex(String name) {
+        int length = name.length();
+        if ((length < 4) || (name.charAt(length - 1) != ']')) {
+            return -1;
+        }
+
+        int bracket = name.indexOf('[');
+        if ((bracket < 1) || (bracket > length - 3)) {
+            return -1;
+        }
+
+        int index = 0;
+        for (int i = bracket + 1; i < length - 1; i++) {
+            char ch = name.charAt(i);
+            if ((ch < '0') || (ch > '9')) {
+                return -1;
             }
 
-            // populate array & respect specified indexes
-            // Note: this may not be linear but we must respect that design choice
-            String[] values = new String[maxIndex + 1];
-            for (Map.Entry<Integer, String> indexedValue : entry.getValue().entrySet()) {
-                values[indexedValue.getKey()] = indexedValue.getValue();
+            int digit = ch - '0';
+            if (index > (Integer.MAX_VALUE - digit) / 10) {
+                // overflow (e.g. a[123123123123123123123123123123]), it's a simple parameter
+                return -1;
             }
-            tmp.put(entry.getKey(), new ParameterValue(values));
+            index = index * 10 + digit;
         }
 
-        parameters = Collections.unmodifiableMap(tmp);
+        return index;
     }
 
-    private void initPathParameters(Map<String, String> map) {
+    private void initPathParameters() {
+        if (pathParameterValues.isEmpty()) {
+            pathParameters = Collections.emptyMap();
+            return;
+        }
+
         Map<String, ParameterValue> tmp = new HashMap<>();
-        if (map != null) {
-            Set<String> names = map.keySet();
-            for (String name : names) {
-                tmp.put(name, new ParameterValue(map.get(name)));
-            }
+        for (Map.Entry<String, String> entry : pathParameterValues.entrySet()) {
+            tmp.put(entry.getKey(), new ParameterValue(entry.getValue()));
         }
 
         pathParameters = Collections.unmodifiableMap(tmp);
     }
 
     private void initAllParameters() {
+        if (pathParameterValues.isEmpty()) {
+            allParameters = getQueryParameters();
+            return;
+        }
+
         Map<String, ParameterValue> tmp = new HashMap<>();
 
         // add query parameters
-        tmp.putAll(parameters);
+        tmp.putAll(getQueryParameters());
 
         // add path parameters
-        tmp.putAll(pathParameters);
+        tmp.putAll(getPathParameters());
 
         allParameters = Collections.unmodifiableMap(tmp);
     }
 
     // INTERNAL, called in (Default)RouteContext.next()
     public void setPathParameters(Map<String, String> pathParameters) {
-        initPathParameters(pathParameters);
-        initAllParameters();
+        // the maps with parameter values are created on demand
+        pathParameterValues = (pathParameters != null) ? pathParameters : Collections.<String, String>emptyMap();
+        this.pathParameters = null;
+        allParameters = null;
     }
 
     public <T> T createEntityFromParameters(Class<T> entityClass) {
@@ -300,14 +351,13 @@ public final class Request {
         return entity;
     }
 
+    /**
+     * Creates an entity from the request body with the content type engine of the request.
+     * The body is parsed straight from the request stream, so it can be parsed only once,
+     * unless it was read before with {@link #getBody()}.
+     */
     public <T> T createEntityFromBody(Class<T> entityClass) {
         try {
-            String body = getBody();
-            if (StringUtils.isNullOrEmpty(body)) {
-                log.warn("Can not create entity '{}' from null or empty request body!", entityClass.getName());
-                return null;
-            }
-
             // try to determine the body content-type
             String contentType = getContentType();
             if (StringUtils.isNullOrEmpty(contentType)) {
@@ -328,16 +378,53 @@ public final class Request {
                     entityClass.getName(), contentType);
             }
 
-            return engine.fromString(body, entityClass);
+            if ((body != null) || isFormContent()) {
+                String content = getBody();
+                if (StringUtils.isNullOrEmpty(content)) {
+                    log.warn("Can not create entity '{}' from null or empty request body!", entityClass.getName());
+                    return null;
+                }
+
+                return engine.fromString(content, entityClass);
+            }
+
+            // parse the body directly from the servlet input stream (without a string copy)
+            PushbackInputStream input = new PushbackInputStream(getBodyAsStream());
+            int first = input.read();
+            if (first == -1) {
+                log.warn("Can not create entity '{}' from null or empty request body!", entityClass.getName());
+                return null;
+            }
+            input.unread(first);
+
+            return engine.fromStream(input, getCharset(), entityClass);
         } catch (PippoRuntimeException e) {
-            // pass-through PippoRuntimeExceptions
-            throw e;
+            // pass-through PippoRuntimeExceptions (a 413 may be wrapped by the engine)
+            StatusCodeException statusCodeException = findStatusCodeException(e);
+            throw (statusCodeException != null) ? statusCodeException : e;
         } catch (Exception e) {
+            StatusCodeException statusCodeException = findStatusCodeException(e);
+            if (statusCodeException != null) {
+                // for example the 413 of a too large body, wrapped by the engine
+                throw statusCodeException;
+            }
+
             // capture and re-throw all other exceptions
             throw new PippoRuntimeException(e, "Failed to create entity '{}' from request body!", entityClass.getName());
         }
     }
 
+    private static StatusCodeException findStatusCodeException(Throwable throwable) {
+        while (throwable != null) {
+            if (throwable instanceof StatusCodeException) {
+                return (StatusCodeException) throwable;
+            }
+            throwable = throwable.getCause();
+        }
+
+        return null;
+    }
+
     public String getHost() {
         return httpServletRequest.getHeader(HttpConstants.Header.HOST);
     }
@@ -380,9 +467,7 @@ public final class Request {
     public String getContentType() {
         if (contentType == null) {
             String httpServletRequestContentType = httpServletRequest.getHeader(HttpConstants.Header.CONTENT_TYPE);
-            if (HttpConstants.Method.POST.equals(httpServletRequest.getMethod())
-                && (HttpConstants.ContentType.APPLICATION_FORM_URLENCODED.equals(httpServletRequestContentType)
-                || HttpConstants.ContentType.MULTIPART_FORM_DATA.equals(httpServletRequestContentType))) {
+            if (isFormContent()) {
                 // Allow forms to exercise RESTful API endpoints by POSTing content like 'application/json'.
                 // This parameter is usually paired with '_method' and '_content' parameters.
                 contentType = getParameter("_content_type").toString(httpServletRequestContentType);
@@ -395,16 +480,15 @@ public final class Request {
 
     public String getBody() {
         if (body == null) {
-            String httpServletRequestContentType = httpServletRequest.getHeader(HttpConstants.Header.CONTENT_TYPE);
-            if (HttpConstants.Method.POST.equals(httpServletRequest.getMethod())
-                && (HttpConstants.ContentType.APPLICATION_FORM_URLENCODED.equals(httpServletRequestContentType)
-                || HttpConstants.ContentType.MULTIPART_FORM_DATA.equals(httpServletRequestContentType))) {
+            if (isFormContent()) {
                 // Allow forms to exercise RESTful API endpoints by POSTing content like 'application/json'.
                 // This parameter is usually paired with '_method' and '_content_type' parameters.
                 body = getParameter("_content").toString(null);
             } else {
                 try {
-                    body = IoUtils.toString(httpServletRequest.getInputStream());
+                    body = IoUtils.toString(getBodyAsStream(), getCharset());
+                } catch (PippoRuntimeException e) {
+                    throw e;
                 } catch (Exception e) {
                     throw new PippoRuntimeException(e, "Exception when reading the request body");
                 }
@@ -413,6 +497,62 @@ public final class Request {
         return body;
     }
 
+    /**
+     * Returns the request body as a stream, without buffering it.
+     * The body can be read only once, so don't mix this method with {@link #getBody()}
+     * (a second call fails with a {@link PippoRuntimeException}).
+     * If the body is larger than {@link Application#getMaximumBodySize()} a
+     * {@link StatusCodeException} with status 413 is thrown, before reading the body
+     * when the content length is known or when the limit is reached otherwise.
+     *
+     * @return the body stream
+     */
+    public InputStream getBodyAsStream() {
+        if (bodyConsumed) {
+            throw new PippoRuntimeException("The request body was already read as a stream");
+        }
+
+        if ((maximumBodySize >= 0) && (getContentLength() > maximumBodySize)) {
+            throw new StatusCodeException(HttpConstants.StatusCode.REQUEST_ENTITY_TOO_LARGE,
+                "Request body of {} bytes exceeds the maximum size of {} bytes", getContentLength(), maximumBodySize);
+        }
+
+        InputStream input;
+        try {
+            input = httpServletRequest.getInputStream();
+            bodyConsumed = true;
+        } catch (IOException e) {
+            throw new PippoRuntimeException(e, "Exception when reading the request body");
+        }
+
+        // the content length is unknown (chunked) or the client lies
+        return (maximumBodySize >= 0) ? new LimitedInputStream(input, maximumBodySize) : input;
+    }
+
+    /**
+     * Returns the charset of the request body (UTF-8 if it's not specified).
+     */
+    public Charset getCharset() {
+        String characterEncoding = httpServletRequest.getCharacterEncoding();
+        if (!StringUtils.isNullOrEmpty(characterEncoding)) {
+            try {
+                return Charset.forName(characterEncoding);
+            } catch (IllegalArgumentException e) {
+                log.warn("Unsupported request character encoding '{}'", characterEncoding);
+            }
+        }
+
+        return StandardCharsets.UTF_8;
+    }
+
+    private boolean isFormContent() {
+        String httpServletRequestContentType = httpServletRequest.getHeader(HttpConstants.Header.CONTENT_TYPE);
+
+        return HttpConstants.Method.POST.equals(httpServletRequest.getMethod())
+            && (HttpConstants.ContentType.APPLICATION_FORM_URLENCODED.equals(httpServletRequestContentType)
+            || HttpConstants.ContentType.MULTIPART_FORM_DATA.equals(httpServletRequestContentType));
+    }
+
     public String getHeader(String name) {
         return httpServletRequest.getHeader(name);
     }
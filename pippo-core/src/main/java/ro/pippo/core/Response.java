@@ -19,25 +19,34 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ro.pippo.core.route.RouteContext;
 import ro.pippo.core.route.RouteDispatcher;
+import ro.pippo.core.util.ByteRange;
 import ro.pippo.core.util.DateUtils;
+import ro.pippo.core.util.FileTransfer;
 import ro.pippo.core.util.IoUtils;
 import ro.pippo.core.util.MimeTypes;
 import ro.pippo.core.util.StringUtils;
 
 import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * @author Decebal Suiu
@@ -46,6 +55,14 @@ public final class Response {
 
     private static final Logger log = LoggerFactory.getLogger(Response.class);
 
+    private static final int DEFAULT_TEMPLATE_BUFFER_SIZE = 8 * 1024;
+
+    // the request attributes of Tomcat's sendfile support (NIO and APR connectors)
+    private static final String TOMCAT_SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String TOMCAT_SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String TOMCAT_SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String TOMCAT_SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private HttpServletResponse httpServletResponse;
     private ContentTypeEngines contentTypeEngines;
     private TemplateEngine templateEngine;
@@ -56,6 +73,7 @@ public final class Response {
     private String applicationPath;
     private ResponseFinalizeListenerList finalizeListeners;
     private MimeTypes mimeTypes;
+    private PippoSettings pippoSettings;
 
     private int status;
     private boolean chunked;
@@ -68,6 +86,7 @@ public final class Response {
         this.contextPath = application.getRouter().getContextPath();
         this.applicationPath = StringUtils.removeEnd(application.getRouter().getApplicationPath(), "/");
         this.mimeTypes = application.getMimeTypes();
+        this.pippoSettings = application.getPippoSettings();
 
         this.status = 0;
     }
@@ -892,7 +911,40 @@ public final class Response {
         }
 
         header(HttpConstants.Header.CONTENT_TYPE, contentTypeEngine.getContentType());
-        send(contentTypeEngine.toString(object));
+
+        checkCommitted();
+
+        String characterEncoding = getCharacterEncoding();
+        Charset charset = (characterEncoding != null) ? Charset.forName(characterEncoding) : StandardCharsets.UTF_8;
+
+        // the object is serialized in a buffer (that starts small and grows up to the response buffer size),
+        // so if the serialization fails before the buffer is full nothing is committed and the error handler
+        // can send the error
+        int bufferSize = httpServletResponse.getBufferSize();
+        ResponseOutputStream output = new ResponseOutputStream((bufferSize > 0) ? bufferSize : DEFAULT_TEMPLATE_BUFFER_SIZE);
+        try {
+            contentTypeEngine.toStream(object, output, charset);
+            output.commit();
+            log.trace("Response committed");
+
+            if (chunked) {
+                // flushing the buffer forces chunked-encoding
+                httpServletResponse.flushBuffer();
+            }
+        } catch (IOException e) {
+            throw new PippoRuntimeException(e);
+        } catch (RuntimeException e) {
+            if (output.isStreaming()) {
+                // a part of the content was written, commit it so the error handler doesn't append an error
+                try {
+                    httpServletResponse.flushBuffer();
+                } catch (IOException ioe) {
+                    log.debug("Failed to flush the response", ioe);
+                }
+            }
+
+            throw e;
+        }
     }
 
     /**
@@ -927,17 +979,54 @@ public final class Response {
 
     /**
      * Writes the specified file directly to the response.
+     * The file is transferred without copying the bytes through the heap when the servlet container
+     * supports it (see {@link FileTransfer}).
      * <p>This method commits the response.</p>
      *
      * @param file
      */
-    public void file(File file) {
-        try {
-            contentLength(file.length());
-            file(file.getName(), new FileInputStream(file));
-        } catch (FileNotFoundException e) {
-            throw new PippoRuntimeException(e);
+    public void resource(File file) {
+        checkCommitted();
+
+        // content type from the file extension if it's not set
+        if (getContentType() == null) {
+            contentType(mimeTypes.getContentType(file.getName(), HttpConstants.ContentType.APPLICATION_OCTET_STREAM));
+        }
+
+        sendFile(file);
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer to the response (the position of the buffer is not changed).
+     * A direct buffer is written without copying the bytes through the heap when the servlet container
+     * supports it (see {@link FileTransfer}).
+     * <p>This method commits the response.</p>
+     *
+     * @param content
+     */
+    public void resource(ByteBuffer content) {
+        checkCommitted();
+
+        // content type to OCTET_STREAM if it's not set
+        if (getContentType() == null) {
+            contentType(HttpConstants.ContentType.APPLICATION_OCTET_STREAM);
         }
+
+        sendBuffer(content);
+    }
+
+    /**
+     * Writes the specified file directly to the response as a download.
+     * The file is transferred without copying the bytes through the heap when the servlet container
+     * supports it (see {@link FileTransfer}).
+     * <p>This method commits the response.</p>
+     *
+     * @param file
+     */
+    public void file(File file) {
+        checkCommitted();
+        setFileHeaders(file.getName());
+        sendFile(file);
     }
 
     /**
@@ -949,7 +1038,39 @@ public final class Response {
      */
     public void file(String filename, InputStream input) {
         checkCommitted();
+        setFileHeaders(filename);
+        finalizeResponse();
+
+        try {
+            // by calling httpServletResponse.getOutputStream() we are committing the response
+            IoUtils.copy(input, httpServletResponse.getOutputStream());
 
+            if (chunked) {
+                // flushing the buffer forces chunked-encoding
+                httpServletResponse.flushBuffer();
+            }
+        } catch (Exception e) {
+            throw new PippoRuntimeException(e);
+        } finally {
+            IoUtils.close(input);
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer to the response as a download
+     * (the position of the buffer is not changed).
+     * <p>This method commits the response.</p>
+     *
+     * @param filename
+     * @param content
+     */
+    public void file(String filename, ByteBuffer content) {
+        checkCommitted();
+        setFileHeaders(filename);
+        sendBuffer(content);
+    }
+
+    private void setFileHeaders(String filename) {
         // content type to OCTET_STREAM if it's not set
         if (getContentType() == null) {
             contentType(mimeTypes.getContentType(filename, HttpConstants.ContentType.APPLICATION_OCTET_STREAM));
@@ -962,24 +1083,158 @@ public final class Response {
                 header(HttpConstants.Header.CONTENT_DISPOSITION, "attachment; filename=\"\"");
             }
         }
+    }
 
+    private void sendBuffer(ByteBuffer content) {
+        contentLength(content.remaining());
         finalizeResponse();
 
         try {
             // by calling httpServletResponse.getOutputStream() we are committing the response
-            IoUtils.copy(input, httpServletResponse.getOutputStream());
+            FileTransfer.transfer(content, httpServletResponse.getOutputStream());
 
             if (chunked) {
                 // flushing the buffer forces chunked-encoding
                 httpServletResponse.flushBuffer();
             }
-        } catch (Exception e) {
+        } catch (IOException e) {
             throw new PippoRuntimeException(e);
-        } finally {
-            IoUtils.close(input);
+        }
+    }
+
+    private void sendFile(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            header(HttpConstants.Header.ACCEPT_RANGES, "bytes");
+
+            List<ByteRange> ranges = getByteRanges(file, length);
+            if (ranges == null) {
+                contentLength(length);
+                transferFile(file, channel, 0, length);
+            } else if (ranges.isEmpty()) {
+                status(HttpConstants.StatusCode.REQUESTED_RANGE_NOT_SATISFIABLE);
+                header(HttpConstants.Header.CONTENT_RANGE, "bytes */" + length);
+                contentLength(0);
+                commit();
+                // commit the empty response, otherwise the status is handled as an error
+                httpServletResponse.flushBuffer();
+            } else if (ranges.size() == 1) {
+                ByteRange range = ranges.get(0);
+                status(HttpConstants.StatusCode.PARTIAL_CONTENT);
+                header(HttpConstants.Header.CONTENT_RANGE, range.getContentRange(length));
+                contentLength(range.getLength());
+                transferFile(file, channel, range.getStart(), range.getLength());
+            } else {
+                transferByteRanges(channel, ranges, length);
+            }
+        } catch (IOException e) {
+            throw new PippoRuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the ranges requested for a file (see {@link ByteRange#parse(String, long)})
+     * or null if the whole file must be sent.
+     */
+    private List<ByteRange> getByteRanges(File file, long length) {
+        RouteContext routeContext = RouteDispatcher.getRouteContext();
+        if (routeContext == null || !routeContext.isRequestMethod(HttpConstants.Method.GET)) {
+            return null;
+        }
+
+        String range = routeContext.getHeader(HttpConstants.Header.RANGE);
+        if (StringUtils.isNullOrEmpty(range)) {
+            return null;
+        }
+
+        // the entity tag was added by HttpCacheToolkit (if it's enabled)
+        String etag = getHeader(HttpConstants.Header.ETAG);
+        if (!routeContext.getApplication().getHttpCacheToolkit().isRangeApplicable(etag, file.lastModified(), routeContext)) {
+            return null;
+        }
+
+        return ByteRange.parse(range, length);
+    }
+
+    private void transferFile(File file, FileChannel channel, long position, long count) throws IOException {
+        if (!chunked && isSendfileSupported()) {
+            // Tomcat sends the file (with sendfile) after the request was handled
+            HttpServletRequest httpServletRequest = getHttpServletRequest();
+            httpServletRequest.setAttribute(TOMCAT_SENDFILE_FILENAME, file.getCanonicalPath());
+            httpServletRequest.setAttribute(TOMCAT_SENDFILE_START, position);
+            httpServletRequest.setAttribute(TOMCAT_SENDFILE_END, position + count);
+            finalizeResponse();
+            httpServletResponse.flushBuffer();
+            return;
+        }
+
+        finalizeResponse();
+
+        // by calling httpServletResponse.getOutputStream() we are committing the response
+        FileTransfer.transfer(channel, position, count, httpServletResponse.getOutputStream());
+
+        if (chunked) {
+            // flushing the buffer forces chunked-encoding
+            httpServletResponse.flushBuffer();
         }
     }
 
+    /**
+     * Sends the ranges as a multipart/byteranges body (see RFC 7233, appendix A).
+     */
+    private void transferByteRanges(FileChannel channel, List<ByteRange> ranges, long length) throws IOException {
+        String boundary = UUID.randomUUID().toString();
+        String partContentType = getContentType();
+
+        // compute the parts headers first for the Content-Length
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            StringBuilder partHeader = new StringBuilder();
+            partHeader.append("\r\n--").append(boundary).append("\r\n");
+            if (partContentType != null) {
+                partHeader.append(HttpConstants.Header.CONTENT_TYPE).append(": ").append(partContentType).append("\r\n");
+            }
+            partHeader.append(HttpConstants.Header.CONTENT_RANGE).append(": ").append(range.getContentRange(length)).append("\r\n\r\n");
+
+            byte[] bytes = partHeader.toString().getBytes(StandardCharsets.ISO_8859_1);
+            partHeaders.add(bytes);
+            contentLength += bytes.length + range.getLength();
+        }
+        byte[] closeDelimiter = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        contentLength += closeDelimiter.length;
+
+        status(HttpConstants.StatusCode.PARTIAL_CONTENT);
+        contentType(HttpConstants.ContentType.MULTIPART_BYTERANGES + "; boundary=" + boundary);
+        contentLength(contentLength);
+        finalizeResponse();
+
+        OutputStream output = httpServletResponse.getOutputStream();
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            output.write(partHeaders.get(i));
+            FileTransfer.transfer(channel, range.getStart(), range.getLength(), output);
+        }
+        output.write(closeDelimiter);
+
+        if (chunked) {
+            // flushing the buffer forces chunked-encoding
+            httpServletResponse.flushBuffer();
+        }
+    }
+
+    private boolean isSendfileSupported() {
+        HttpServletRequest httpServletRequest = getHttpServletRequest();
+
+        return (httpServletRequest != null) && Boolean.TRUE.equals(httpServletRequest.getAttribute(TOMCAT_SENDFILE_SUPPORT));
+    }
+
+    private HttpServletRequest getHttpServletRequest() {
+        RouteContext routeContext = RouteDispatcher.getRouteContext();
+
+        return (routeContext != null) ? routeContext.getRequest().getHttpServletRequest() : null;
+    }
+
     /**
      * Renders a template and writes the output directly to the response.
      * <p>This method commits the response.</p>
@@ -1012,10 +1267,34 @@ public final class Response {
             model.put("session", session);
         }
 
+        checkCommitted();
+
         // render the template using the merged model
-        StringWriter stringWriter = new StringWriter();
-        templateEngine.renderResource(templateName, model, stringWriter);
-        send(stringWriter.toString());
+        // a bufferSize <= 0 keeps the whole page in memory until the template is rendered
+        int bufferSize = pippoSettings.getInteger(PippoConstants.SETTING_TEMPLATE_BUFFER_SIZE, DEFAULT_TEMPLATE_BUFFER_SIZE);
+        ResponseWriter writer = new ResponseWriter(bufferSize);
+        try {
+            templateEngine.renderResource(templateName, model, writer);
+            writer.commit();
+            log.trace("Response committed");
+
+            if (chunked) {
+                httpServletResponse.flushBuffer();
+            }
+        } catch (IOException e) {
+            throw new PippoRuntimeException(e);
+        } catch (RuntimeException e) {
+            if (writer.isStreaming()) {
+                // a part of the page was written, commit it so the error handler doesn't append an error page
+                try {
+                    httpServletResponse.flushBuffer();
+                } catch (IOException ioe) {
+                    log.debug("Failed to flush the response", ioe);
+                }
+            }
+
+            throw e;
+        }
     }
 
     private void checkCommitted() {
@@ -1110,6 +1389,217 @@ public final class Response {
         }
     }
 
+    /**
+     * A writer that keeps the rendered content in a buffer and writes it to the servlet writer
+     * only when the buffer is full or the template is rendered.
+     * Until the first write the response is not finalized, so if the rendering fails the
+     * error handler can still render the error template.
+     * The template engines may flush the writer, but a flush doesn't empty the buffer.
+     */
+    private class ResponseWriter extends Writer {
+
+        private final int bufferSize;
+        private char[] buffer;
+        private int count;
+        private Writer writer; // the servlet writer (opened on first write)
+
+        private ResponseWriter(int bufferSize) {
+            this.bufferSize = bufferSize;
+
+            buffer = new char[(bufferSize > 0) ? bufferSize : 1024];
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            ensureCapacity(1);
+            buffer[count++] = (char) c;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            if ((bufferSize > 0) && (len >= bufferSize)) {
+                // don't copy large chunks in buffer
+                writeBuffer();
+                writer.write(cbuf, off, len);
+                return;
+            }
+
+            ensureCapacity(len);
+            System.arraycopy(cbuf, off, buffer, count, len);
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            if ((bufferSize > 0) && (len >= bufferSize)) {
+                // don't copy large chunks in buffer
+                writeBuffer();
+                writer.write(str, off, len);
+                return;
+            }
+
+            ensureCapacity(len);
+            str.getChars(off, off + len, buffer, count);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // nothing, see commit method
+        }
+
+        @Override
+        public void close() throws IOException {
+            // nothing, see commit method
+        }
+
+        /**
+         * Returns true if some content was written to the servlet writer.
+         */
+        public boolean isStreaming() {
+            return writer != null;
+        }
+
+        public void commit() throws IOException {
+            writeBuffer();
+            writer.flush();
+        }
+
+        private void ensureCapacity(int len) throws IOException {
+            if (count + len <= buffer.length) {
+                return;
+            }
+
+            if (bufferSize > 0) {
+                writeBuffer();
+            } else {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + len));
+            }
+        }
+
+        private void writeBuffer() throws IOException {
+            if (writer == null) {
+                finalizeResponse();
+
+                // content type to TEXT_HTML if it's not set
+                if (getContentType() == null) {
+                    contentType(HttpConstants.ContentType.TEXT_HTML);
+                }
+
+                writer = httpServletResponse.getWriter();
+            }
+
+            writer.write(buffer, 0, count);
+            count = 0;
+        }
+
+    }
+
+    /**
+     * An output stream that keeps the serialized object in a buffer and writes it to the servlet
+     * output stream only when the buffer is full or the object is serialized.
+     * If the object fits in the buffer the content length is known and it's sent, otherwise
+     * the servlet container switches to chunked-encoding.
+     * Until the first write the response is not finalized, so if the serialization fails the
+     * error handler can still send the error.
+     * The content type engines may flush the stream, but a flush doesn't empty the buffer.
+     */
+    private class ResponseOutputStream extends OutputStream {
+
+        private static final int INITIAL_BUFFER_SIZE = 512;
+
+        private final int maximumBufferSize;
+        private byte[] buffer;
+        private int count;
+        private OutputStream output; // the servlet output stream (opened on first write)
+
+        private ResponseOutputStream(int maximumBufferSize) {
+            this.maximumBufferSize = maximumBufferSize;
+            // most payloads are small, don't allocate the whole response buffer for each response
+            buffer = new byte[Math.min(INITIAL_BUFFER_SIZE, maximumBufferSize)];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length && !grow(count + 1)) {
+                writeBuffer();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len >= maximumBufferSize) {
+                // don't copy large chunks in buffer
+                writeBuffer();
+                output.write(b, off, len);
+                return;
+            }
+
+            if (count + len > buffer.length && !grow(count + len)) {
+                writeBuffer();
+                if (len > buffer.length) {
+                    grow(len);
+                }
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // nothing, see commit method
+        }
+
+        @Override
+        public void close() throws IOException {
+            // nothing, see commit method
+        }
+
+        /**
+         * Returns true if some content was written to the servlet output stream.
+         */
+        public boolean isStreaming() {
+            return output != null;
+        }
+
+        public void commit() throws IOException {
+            if (output == null) {
+                // the whole content is in buffer
+                contentLength(count);
+            }
+            writeBuffer();
+            output.flush();
+        }
+
+        /**
+         * Grows the buffer (up to the maximum buffer size) to hold at least minimumSize bytes.
+         *
+         * @return false if the maximum buffer size is too small
+         */
+        private boolean grow(int minimumSize) {
+            if (minimumSize > maximumBufferSize) {
+                return false;
+            }
+
+            int size = Math.min(Math.max(buffer.length * 2, minimumSize), maximumBufferSize);
+            buffer = Arrays.copyOf(buffer, size);
+
+            return true;
+        }
+
+        private void writeBuffer() throws IOException {
+            if (output == null) {
+                finalizeResponse();
+                output = httpServletResponse.getOutputStream();
+            }
+
+            output.write(buffer, 0, count);
+            count = 0;
+        }
+
+    }
+
     public static Response get() {
         RouteContext routeContext = RouteDispatcher.getRouteContext();
 
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core;
+
+import ro.pippo.core.util.BoundedCache;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of compiled string templates used by the {@link TemplateEngine}s
+ * in {@link TemplateEngine#renderString(String, Map, java.io.Writer)}.
+ * The key is the template content, so a template loaded from a database on each request
+ * is compiled only once while its content doesn't change.
+ * The compiled templates must be thread safe.
+ * The reads are lock free and the least recently used templates are evicted approximately (see {@link BoundedCache}).
+ * <p/>
+ * The maximum size is specified by the {@link PippoConstants#SETTING_TEMPLATE_STRING_CACHE_SIZE} setting;
+ * a size less or equal to zero disables the cache.
+ *
+ * @param <T> the type of the compiled template
+ */
+public class StringTemplateCache<T> {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 100;
+
+    private final BoundedCache<String, T> templates;
+
+    public StringTemplateCache(PippoSettings pippoSettings) {
+        this(pippoSettings.getInteger(PippoConstants.SETTING_TEMPLATE_STRING_CACHE_SIZE, DEFAULT_MAXIMUM_SIZE));
+    }
+
+    public StringTemplateCache(int maximumSize) {
+        templates = new BoundedCache<>(maximumSize);
+    }
+
+    /**
+     * Returns the compiled template for the content. The template is compiled
+     * (outside of any lock) with the compiler function if it's not in the cache.
+     *
+     * @param templateContent
+     * @param compiler
+     * @return the compiled template
+     */
+    public T get(String templateContent, Function<String, T> compiler) {
+        return templates.get(templateContent, compiler);
+    }
+
+    public int size() {
+        return templates.size();
+    }
+
+    public void clear() {
+        templates.clear();
+    }
+
+}
@@ -44,4 +44,21 @@ public interface TemplateEngine {
 
     void renderResource(String templateName, Map<String, Object> model, Writer writer);
 
+    /**
+     * Returns the file extension (without dot) of the templates handled by this engine
+     * or null if the templates cannot be precompiled (see {@link TemplatePrecompiler}).
+     */
+    default String getFileExtension() {
+        return null;
+    }
+
+    /**
+     * Compiles and caches the template (the same as the first {@link #renderResource(String, Map, Writer)})
+     * without rendering it.
+     *
+     * @param templateName the template name relative to the path prefix, with the file extension
+     */
+    default void compile(String templateName) {
+    }
+
 }
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ro.pippo.core.util.ClasspathUtils;
+import ro.pippo.core.util.IoUtils;
+import ro.pippo.core.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles in parallel all templates found under the template path prefix, so the first requests
+ * after a deploy don't pay the compilation cost (see {@link TemplateEngine#compile(String)}).
+ * <p/>
+ * The templates are found by scanning the path prefix in all classpath directories and jars.
+ * If the path prefix contains an index file ({@link #INDEX_NAME}) with a template name per line
+ * then the index is used and the classpath is not scanned. The index can be created at build time
+ * with {@link #main(String[])}.
+ * <p/>
+ * {@link Application} runs the precompiler at init if the setting {@link PippoConstants#SETTING_TEMPLATE_WARMUP}
+ * is true (default true only in prod mode).
+ */
+public class TemplatePrecompiler {
+
+    private static final Logger log = LoggerFactory.getLogger(TemplatePrecompiler.class);
+
+    public static final String INDEX_NAME = "templates.idx";
+
+    private final TemplateEngine templateEngine;
+    private final String pathPrefix;
+
+    public TemplatePrecompiler(TemplateEngine templateEngine, PippoSettings pippoSettings) {
+        this.templateEngine = templateEngine;
+
+        String pathPrefix = pippoSettings.getString(PippoConstants.SETTING_TEMPLATE_PATH_PREFIX, null);
+        if (StringUtils.isNullOrEmpty(pathPrefix)) {
+            pathPrefix = TemplateEngine.DEFAULT_PATH_PREFIX;
+        }
+        pathPrefix = StringUtils.removeStart(pathPrefix, "/");
+        this.pathPrefix = StringUtils.removeEnd(pathPrefix, "/");
+    }
+
+    /**
+     * Returns the names (relative to the path prefix) of all templates handled by the template engine.
+     */
+    public List<String> getTemplateNames() {
+        String fileExtension = templateEngine.getFileExtension();
+        if (StringUtils.isNullOrEmpty(fileExtension)) {
+            return new ArrayList<>();
+        }
+
+        String suffix = "." + fileExtension;
+        return getResourceNames().stream()
+            .filter(name -> name.endsWith(suffix))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Compiles all templates in parallel and returns the number of compiled templates.
+     * The templates that fail to compile are logged and reported together in a {@link PippoRuntimeException}.
+     */
+    public int precompile() {
+        List<String> templateNames = getTemplateNames();
+        if (templateNames.isEmpty()) {
+            log.debug("No templates to precompile for '{}'", templateEngine.getClass().getName());
+            return 0;
+        }
+
+        long start = System.currentTimeMillis();
+        int threads = Math.min(templateNames.size(), Runtime.getRuntime().availableProcessors());
+        // the engines load the templates with the context class loader
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "pippo-template-precompiler");
+            thread.setDaemon(true);
+            thread.setContextClassLoader(classLoader);
+
+            return thread;
+        });
+
+        List<String> failures = new ArrayList<>();
+        try {
+            Map<String, Future<?>> futures = new LinkedHashMap<>();
+            for (String templateName : templateNames) {
+                futures.put(templateName, executor.submit(() -> templateEngine.compile(templateName)));
+            }
+
+            for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (ExecutionException e) {
+                    log.error("Failed to compile template '{}'", entry.getKey(), e.getCause());
+                    failures.add(entry.getKey());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PippoRuntimeException(e, "Interrupted while precompiling the templates");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (!failures.isEmpty()) {
+            throw new PippoRuntimeException("Failed to compile {} template(s): {}", failures.size(), failures);
+        }
+
+        log.debug("Precompiled {} templates in {} ms", templateNames.size(), System.currentTimeMillis() - start);
+
+        return templateNames.size();
+    }
+
+    private Set<String> getResourceNames() {
+        Set<String> names = new TreeSet<>();
+
+        URL index = ClasspathUtils.locateOnClasspath(pathPrefix + "/" + INDEX_NAME);
+        if (index != null) {
+            log.debug("Read the templates from '{}'", index);
+            try (InputStream input = index.openStream()) {
+                for (String line : IoUtils.toString(input, StandardCharsets.UTF_8).split("\n")) {
+                    line = line.trim();
+                    if (!line.isEmpty()) {
+                        names.add(line);
+                    }
+                }
+            } catch (IOException e) {
+                throw new PippoRuntimeException(e, "Failed to read '{}'", index);
+            }
+
+            return names;
+        }
+
+        for (URL url : ClasspathUtils.getResources(pathPrefix)) {
+            try {
+                names.addAll(scan(url, pathPrefix));
+            } catch (IOException | URISyntaxException e) {
+                throw new PippoRuntimeException(e, "Failed to scan '{}'", url);
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * Returns the names of the resources (relative to the path prefix) from a classpath directory or jar.
+     */
+    static List<String> scan(URL url, String pathPrefix) throws IOException, URISyntaxException {
+        List<String> names = new ArrayList<>();
+        String protocol = url.getProtocol();
+        if ("file".equals(protocol)) {
+            Path directory = Paths.get(url.toURI());
+            names.addAll(scan(directory));
+        } else if ("jar".equals(protocol)) {
+            String prefix = pathPrefix + "/";
+            // the jar file is cached and shared by the url connections, so don't close it
+            JarFile jarFile = ((JarURLConnection) url.openConnection()).getJarFile();
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().startsWith(prefix)) {
+                    names.add(entry.getName().substring(prefix.length()));
+                }
+            }
+        } else {
+            log.warn("Cannot scan '{}' for templates, use an index file '{}'", url, INDEX_NAME);
+        }
+
+        return names;
+    }
+
+    private static List<String> scan(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths
+                .filter(Files::isRegularFile)
+                .map(path -> directory.relativize(path).toString().replace('\\', '/'))
+                .filter(name -> !INDEX_NAME.equals(name))
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Writes the index file of a templates directory (for example "target/classes/templates").
+     * It can be called at build time (for example with exec-maven-plugin in the "process-classes" phase).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: TemplatePrecompiler <templates directory>");
+            System.exit(1);
+        }
+
+        Path directory = Paths.get(args[0]);
+        List<String> names = scan(directory);
+        names.sort(null);
+        Files.write(directory.resolve(INDEX_NAME), names, StandardCharsets.UTF_8);
+        System.out.println("Wrote " + names.size() + " template names in " + directory.resolve(INDEX_NAME));
+    }
+
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.route;
+
+import ro.pippo.core.util.BoundedCache;
+import ro.pippo.core.util.DateUtils;
+import ro.pippo.core.util.HttpCacheToolkit;
+import ro.pippo.core.util.IoUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A bounded cache of the assets served by a {@link ClasspathResourceHandler}.
+ * The cache is bounded by the total size of the assets (the weight) and not by the number of assets.
+ * The reads are lock free and the eviction is an approximation of LRU (see {@link BoundedCache}).
+ * An asset keeps its content in a direct (off-heap) buffer, together with the response headers
+ * (length, ETag, content type and last modified) computed when the asset was loaded,
+ * so a cached asset is served without a class loader lookup or a {@link URLConnection}.
+ * <p/>
+ * An asset can have encoded variants: the precompressed siblings of the resource (<code>.br</code>, <code>.gz</code>)
+ * and, for a compressible text asset without a <code>.gz</code> sibling, the gzip variant compressed once
+ * when the asset is loaded. The variants are counted in the weight of the asset.
+ * <p/>
+ * The cache remembers (in a bounded map) the resources that are not cached, too big or with an unknown length,
+ * together with their resolved urls, so such a resource is probed only once.
+ * <p/>
+ * The assets are considered immutable; the cache is used only in prod mode.
+ * <p/>
+ * The direct buffers of an evicted asset are freed only when the asset is garbage collected,
+ * so the direct memory used by the cache can exceed the maximum weight for a while.
+ * Keep <code>-XX:MaxDirectMemorySize</code> (by default the maximum heap size) well above the maximum weight,
+ * for example twice the maximum weight plus the direct memory used by the server.
+ */
+public class AssetCache {
+
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 32 * 1024 * 1024;
+    public static final int DEFAULT_MAXIMUM_ASSET_SIZE = 1024 * 1024;
+
+    /**
+     * The smaller assets are not compressed (the gain doesn't pay the Content-Encoding header).
+     */
+    public static final int MINIMUM_COMPRESSION_SIZE = 1024;
+
+    public static final String GZIP = "gzip";
+    public static final String BROTLI = "br";
+
+    /**
+     * The maximum number of remembered resources that are not cached.
+     */
+    public static final int MAXIMUM_UNCACHED_ASSETS = 1024;
+
+    private final int maximumAssetSize;
+    private final BoundedCache<String, Asset> assets;
+    private final BoundedCache<String, UncachedAsset> uncachedAssets;
+
+    public AssetCache() {
+        this(DEFAULT_MAXIMUM_WEIGHT, DEFAULT_MAXIMUM_ASSET_SIZE);
+    }
+
+    /**
+     * @param maximumWeight the maximum total size of the cached assets (in bytes)
+     * @param maximumAssetSize the assets bigger than this size (in bytes) are not cached
+     */
+    public AssetCache(long maximumWeight, int maximumAssetSize) {
+        this.maximumAssetSize = maximumAssetSize;
+
+        assets = new BoundedCache<>(maximumWeight, Asset::getWeight);
+        uncachedAssets = new BoundedCache<>(MAXIMUM_UNCACHED_ASSETS);
+    }
+
+    public long getMaximumWeight() {
+        return assets.getMaximumWeight();
+    }
+
+    public int getMaximumAssetSize() {
+        return maximumAssetSize;
+    }
+
+    public Asset get(String resourcePath) {
+        return assets.get(resourcePath);
+    }
+
+    /**
+     * Returns the resource that was loaded before but not cached (too big or with an unknown length) or null.
+     */
+    public UncachedAsset getUncached(String resourcePath) {
+        return uncachedAssets.get(resourcePath);
+    }
+
+    /**
+     * Loads the asset from the url and adds it in the cache.
+     *
+     * @param resourcePath
+     * @param resourceUrl
+     * @param contentType the content type of the asset or null if the asset is sent as a file
+     * @return the asset or null if the asset is too big to be cached
+     */
+    public Asset load(String resourcePath, URL resourceUrl, String contentType) throws IOException {
+        return load(resourcePath, resourceUrl, contentType, Collections.emptyMap());
+    }
+
+    /**
+     * Loads the asset and its precompressed variants from the urls and adds it in the cache.
+     *
+     * @param resourcePath
+     * @param resourceUrl
+     * @param contentType the content type of the asset or null if the asset is sent as a file
+     * @param encodedUrls the urls of the precompressed variants by content encoding
+     * @return the asset or null if the asset is too big to be cached (see {@link #getUncached(String)})
+     */
+    public Asset load(String resourcePath, URL resourceUrl, String contentType, Map<String, URL> encodedUrls) throws IOException {
+        Asset asset = loadAsset(resourceUrl, contentType, null);
+        if (asset == null) {
+            // don't probe it again
+            uncachedAssets.put(resourcePath, new UncachedAsset(resourceUrl, contentType, encodedUrls));
+
+            return null;
+        }
+
+        for (Map.Entry<String, URL> entry : encodedUrls.entrySet()) {
+            Asset encodedAsset = loadAsset(entry.getValue(), contentType, entry.getKey());
+            if (encodedAsset != null) {
+                asset.addEncodedAsset(encodedAsset);
+            }
+        }
+
+        if (asset.getEncodedAsset(GZIP) == null && isCompressible(contentType) && asset.getLength() >= MINIMUM_COMPRESSION_SIZE) {
+            // compress once, keep it only if it's smaller
+            ByteBuffer compressed = gzip(asset.getContent());
+            if (compressed.remaining() < asset.getLength()) {
+                asset.addEncodedAsset(new Asset(compressed, asset.getLastModified(), contentType, asset.getFilename(), GZIP));
+            }
+        }
+
+        put(resourcePath, asset);
+
+        return asset;
+    }
+
+    /**
+     * Returns true for the text content types (for example css, js, json, svg).
+     */
+    public static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+
+        return contentType.startsWith("text/")
+            || contentType.contains("javascript")
+            || contentType.contains("json")
+            || contentType.contains("xml");
+    }
+
+    private Asset loadAsset(URL url, String contentType, String contentEncoding) throws IOException {
+        URLConnection connection = url.openConnection();
+        long length = connection.getContentLengthLong();
+        if (length < 0 || length > maximumAssetSize) {
+            // unknown or too big, the asset is streamed
+            return null;
+        }
+
+        long lastModified = connection.getLastModified();
+        byte[] bytes;
+        try (InputStream input = connection.getInputStream()) {
+            bytes = IoUtils.toByteArray(input);
+        }
+
+        String filename = url.getFile().substring(url.getFile().lastIndexOf('/') + 1);
+
+        return new Asset(toDirectBuffer(bytes), lastModified, contentType, filename, contentEncoding);
+    }
+
+    private static ByteBuffer gzip(ByteBuffer content) throws IOException {
+        byte[] bytes = new byte[content.remaining()];
+        content.duplicate().get(bytes);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output) {
+
+            {
+                // the asset is compressed only once
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+
+        }) {
+            gzip.write(bytes);
+        }
+
+        return toDirectBuffer(output.toByteArray());
+    }
+
+    private static ByteBuffer toDirectBuffer(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Adds or replaces the asset. An asset heavier than the maximum weight is not cached.
+     */
+    public void put(String resourcePath, Asset asset) {
+        assets.put(resourcePath, asset);
+    }
+
+    public int size() {
+        return assets.size();
+    }
+
+    /**
+     * Returns the total size of the cached assets (including the encoded variants).
+     */
+    public long getWeight() {
+        return assets.getWeight();
+    }
+
+    public void clear() {
+        assets.clear();
+        uncachedAssets.clear();
+    }
+
+    /**
+     * A resource that is not cached (it's streamed), with the resolved urls of the resource
+     * and of its precompressed variants.
+     */
+    public static class UncachedAsset {
+
+        private final URL url;
+        private final String contentType;
+        private final Map<String, URL> encodedUrls;
+
+        public UncachedAsset(URL url, String contentType, Map<String, URL> encodedUrls) {
+            this.url = url;
+            this.contentType = contentType;
+            this.encodedUrls = encodedUrls;
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * Returns the urls of the precompressed variants by content encoding.
+         */
+        public Map<String, URL> getEncodedUrls() {
+            return encodedUrls;
+        }
+
+    }
+
+    /**
+     * A cached asset.
+     */
+    public static class Asset {
+
+        private final ByteBuffer content;
+        private final long lastModified;
+        private final String contentType;
+        private final String filename;
+        private final String contentEncoding;
+        private final String etag;
+        private final String httpLastModified;
+        private final Map<String, Asset> encodedAssets;
+
+        /**
+         * @param content the content (the buffer is shared by the requests, so it should be read only)
+         * @param lastModified
+         * @param contentType the content type or null if the asset is sent as a file
+         * @param filename
+         */
+        public Asset(ByteBuffer content, long lastModified, String contentType, String filename) {
+            this(content, lastModified, contentType, filename, null);
+        }
+
+        /**
+         * @param content the content (the buffer is shared by the requests, so it should be read only)
+         * @param lastModified
+         * @param contentType the content type or null if the asset is sent as a file
+         * @param filename
+         * @param contentEncoding the content encoding of an encoded variant or null
+         */
+        public Asset(ByteBuffer content, long lastModified, String contentType, String filename, String contentEncoding) {
+            this.content = content;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.filename = filename;
+            this.contentEncoding = contentEncoding;
+
+            // each variant has its own entity tag
+            etag = (contentEncoding == null) ? HttpCacheToolkit.getEtag(lastModified) : HttpCacheToolkit.getEtag(lastModified, contentEncoding);
+            httpLastModified = DateUtils.formatForHttpHeader(lastModified);
+            encodedAssets = new HashMap<>(4);
+        }
+
+        /**
+         * Returns the content; use {@link ByteBuffer#duplicate()} to read it.
+         */
+        public ByteBuffer getContent() {
+            return content;
+        }
+
+        public int getLength() {
+            return content.remaining();
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * Returns the value of the Last-Modified header.
+         */
+        public String getHttpLastModified() {
+            return httpLastModified;
+        }
+
+        public String getContentEncoding() {
+            return contentEncoding;
+        }
+
+        /**
+         * Adds an encoded variant. The variants are added before the asset is put in the cache.
+         */
+        public void addEncodedAsset(Asset encodedAsset) {
+            encodedAssets.put(encodedAsset.getContentEncoding(), encodedAsset);
+        }
+
+        /**
+         * Returns the variant with the content encoding or null.
+         */
+        public Asset getEncodedAsset(String contentEncoding) {
+            return encodedAssets.get(contentEncoding);
+        }
+
+        public boolean hasEncodedAssets() {
+            return !encodedAssets.isEmpty();
+        }
+
+        /**
+         * Returns the size of the content and of all the encoded variants.
+         */
+        public long getWeight() {
+            long weight = getLength();
+            for (Asset encodedAsset : encodedAssets.values()) {
+                weight += encodedAsset.getLength();
+            }
+
+            return weight;
+        }
+
+    }
+
+}
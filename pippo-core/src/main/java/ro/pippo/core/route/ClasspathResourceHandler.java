@@ -15,17 +15,57 @@
  */
 package ro.pippo.core.route;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ro.pippo.core.HttpConstants;
+import ro.pippo.core.PippoRuntimeException;
+import ro.pippo.core.util.HttpCacheToolkit;
+import ro.pippo.core.util.IoUtils;
+import ro.pippo.core.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Serves classpath resources.
+ * <p/>
+ * In prod mode the resources are served from an {@link AssetCache}, so a cached resource is sent
+ * without a class loader lookup or a jar access. Use {@link #useAssetCache(AssetCache)} to change
+ * the size of the cache or to disable it.
+ * <p/>
+ * When the request accepts it, a precompressed sibling of the resource (<code>main.css.br</code>,
+ * <code>main.css.gz</code>) is sent with a Content-Encoding header. The cached text resources
+ * without a <code>.gz</code> sibling are compressed once, by the cache.
+ * <p/>
+ * With a {@link ResourceManifest} (see {@link #useManifest(ResourceManifest)}) the version of a resource
+ * is the fingerprint of its content. A resource that is not in the manifest (or without a manifest) is
+ * versioned by its last modified time.
  *
  * @author James Moger
  */
 public class ClasspathResourceHandler extends UrlResourceHandler {
 
+    private static final Logger log = LoggerFactory.getLogger(ClasspathResourceHandler.class);
+
+    // content encoding -> file extension, in the order of preference
+    private static final Map<String, String> ENCODING_EXTENSIONS;
+
+    static {
+        Map<String, String> encodingExtensions = new LinkedHashMap<>();
+        encodingExtensions.put(AssetCache.BROTLI, ".br");
+        encodingExtensions.put(AssetCache.GZIP, ".gz");
+        ENCODING_EXTENSIONS = Collections.unmodifiableMap(encodingExtensions);
+    }
+
     private final String resourceBasePath;
 
+    private AssetCache assetCache = new AssetCache();
+    private ResourceManifest manifest;
+
     public ClasspathResourceHandler(String urlPath, String resourceBasePath) {
         super(urlPath);
 
@@ -34,12 +74,249 @@ public class ClasspathResourceHandler extends UrlResourceHandler {
 
     @Override
     public URL getResourceUrl(String resourcePath) {
-        String resourceName = getResourceBasePath() + "/" + resourcePath;
-        return this.getClass().getClassLoader().getResource(resourceName);
+        return this.getClass().getClassLoader().getResource(getResourceName(resourcePath));
     }
 
     public String getResourceBasePath() {
         return resourceBasePath;
     }
 
+    public AssetCache getAssetCache() {
+        return assetCache;
+    }
+
+    /**
+     * Sets the cache of the resources; null disables the cache.
+     */
+    public ClasspathResourceHandler useAssetCache(AssetCache assetCache) {
+        this.assetCache = assetCache;
+
+        return this;
+    }
+
+    public ResourceManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Sets the manifest with the fingerprints of the resources (see {@link ResourceManifest#build(ClassLoader, String)});
+     * null uses the last modified time of a resource as its version.
+     */
+    public ClasspathResourceHandler useManifest(ResourceManifest manifest) {
+        this.manifest = manifest;
+
+        return this;
+    }
+
+    @Override
+    protected String getResourceVersion(String resourcePath) {
+        String version = getKnownResourceVersion(resourcePath);
+
+        return (version != null) ? version : super.getResourceVersion(resourcePath);
+    }
+
+    @Override
+    protected String getKnownResourceVersion(String resourcePath) {
+        if (manifest != null) {
+            String fingerprint = manifest.getFingerprint(getResourceName(resourcePath));
+            if (fingerprint != null) {
+                return fingerprint;
+            }
+            // not in the manifest (for example in a jar without directory entries)
+        }
+
+        AssetCache.Asset asset = (assetCache != null) ? assetCache.get(resourcePath) : null;
+        if (asset != null) {
+            // the last modified time, without a URLConnection
+            return Long.toString(asset.getLastModified());
+        }
+
+        return null;
+    }
+
+    @Override
+    public void handleResource(String resourcePath, RouteContext routeContext) {
+        boolean useAssetCache = (assetCache != null) && routeContext.getApplication().getPippoSettings().isProd();
+        if (useAssetCache) {
+            AssetCache.Asset asset = assetCache.get(resourcePath);
+            if (asset != null) {
+                streamAsset(asset, routeContext);
+                return;
+            }
+
+            AssetCache.UncachedAsset uncachedAsset = assetCache.getUncached(resourcePath);
+            if (uncachedAsset != null) {
+                // too big for the cache, the urls were resolved by a previous request
+                streamResource(uncachedAsset.getUrl(), uncachedAsset.getContentType(), uncachedAsset.getEncodedUrls(), routeContext);
+                return;
+            }
+        }
+
+        URL url = getResourceUrl(resourcePath);
+        if (url == null) {
+            return;
+        }
+
+        String mimeType = routeContext.getApplication().getMimeTypes().getContentType(url.getFile());
+        String contentType = StringUtils.isNullOrEmpty(mimeType) ? null : mimeType;
+        Map<String, URL> encodedUrls = getEncodedResourceUrls(resourcePath);
+
+        if (useAssetCache) {
+            AssetCache.Asset asset;
+            try {
+                asset = assetCache.load(resourcePath, url, contentType, encodedUrls);
+            } catch (IOException e) {
+                throw new PippoRuntimeException(e, "Failed to load resource {}", url);
+            }
+
+            if (asset != null) {
+                streamAsset(asset, routeContext);
+                return;
+            }
+            // too big for the cache (the cache remembers it)
+        }
+
+        streamResource(url, contentType, encodedUrls, routeContext);
+    }
+
+    private void streamResource(URL url, String contentType, Map<String, URL> encodedUrls, RouteContext routeContext) {
+        if (!encodedUrls.isEmpty()) {
+            routeContext.setHeader(HttpConstants.Header.VARY, HttpConstants.Header.ACCEPT_ENCODING);
+
+            String contentEncoding = getContentEncoding(routeContext, encodedUrls.keySet());
+            if (contentEncoding != null) {
+                streamEncodedResource(encodedUrls.get(contentEncoding), contentEncoding, contentType, routeContext);
+                return;
+            }
+        }
+
+        streamResource(url, routeContext);
+    }
+
+    protected String getResourceName(String resourcePath) {
+        return getResourceBasePath() + "/" + resourcePath;
+    }
+
+    /**
+     * Returns the urls of the precompressed siblings of the resource by content encoding.
+     */
+    protected Map<String, URL> getEncodedResourceUrls(String resourcePath) {
+        String resourceName = getResourceName(resourcePath);
+        Map<String, URL> encodedUrls = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : ENCODING_EXTENSIONS.entrySet()) {
+            URL url = this.getClass().getClassLoader().getResource(resourceName + entry.getValue());
+            if (url != null) {
+                encodedUrls.put(entry.getKey(), url);
+            }
+        }
+
+        return encodedUrls;
+    }
+
+    protected void streamAsset(AssetCache.Asset asset, RouteContext routeContext) {
+        if (asset.hasEncodedAssets()) {
+            routeContext.setHeader(HttpConstants.Header.VARY, HttpConstants.Header.ACCEPT_ENCODING);
+
+            for (String contentEncoding : ENCODING_EXTENSIONS.keySet()) {
+                AssetCache.Asset encodedAsset = asset.getEncodedAsset(contentEncoding);
+                if (encodedAsset != null && isAccepted(routeContext.getHeader(HttpConstants.Header.ACCEPT_ENCODING), contentEncoding)) {
+                    asset = encodedAsset;
+                    break;
+                }
+            }
+        }
+
+        routeContext.getApplication().getHttpCacheToolkit().addEtag(routeContext, asset.getLastModified(),
+            asset.getEtag(), asset.getHttpLastModified());
+
+        if (routeContext.getResponse().getStatus() == HttpConstants.StatusCode.NOT_MODIFIED) {
+            // do not stream anything out, simply return 304
+            routeContext.getResponse().commit();
+            return;
+        }
+
+        if (asset.getContentEncoding() != null) {
+            routeContext.setHeader(HttpConstants.Header.CONTENT_ENCODING, asset.getContentEncoding());
+        }
+
+        if (asset.getContentType() != null) {
+            routeContext.getResponse().contentType(asset.getContentType());
+            routeContext.getResponse().ok().resource(asset.getContent());
+        } else {
+            routeContext.getResponse().ok().file(asset.getFilename(), asset.getContent());
+        }
+    }
+
+    protected void streamEncodedResource(URL resourceUrl, String contentEncoding, String contentType, RouteContext routeContext) {
+        try {
+            long lastModified = resourceUrl.openConnection().getLastModified();
+            routeContext.getApplication().getHttpCacheToolkit().addEtag(routeContext, lastModified,
+                HttpCacheToolkit.getEtag(lastModified, contentEncoding), null);
+
+            if (routeContext.getResponse().getStatus() == HttpConstants.StatusCode.NOT_MODIFIED) {
+                // do not stream anything out, simply return 304
+                routeContext.getResponse().commit();
+                return;
+            }
+
+            log.debug("Streaming as resource '{}' ({})", resourceUrl, contentEncoding);
+            routeContext.setHeader(HttpConstants.Header.CONTENT_ENCODING, contentEncoding);
+            // the content type of the decoded resource
+            routeContext.getResponse().contentType((contentType != null) ? contentType : HttpConstants.ContentType.APPLICATION_OCTET_STREAM);
+            File file = IoUtils.toFile(resourceUrl);
+            if (file != null) {
+                routeContext.getResponse().ok().resource(file);
+            } else {
+                routeContext.getResponse().ok().resource(resourceUrl.openStream());
+            }
+        } catch (Exception e) {
+            throw new PippoRuntimeException(e, "Failed to stream resource {}", resourceUrl);
+        }
+    }
+
+    private static String getContentEncoding(RouteContext routeContext, Iterable<String> contentEncodings) {
+        String acceptEncoding = routeContext.getHeader(HttpConstants.Header.ACCEPT_ENCODING);
+        for (String contentEncoding : contentEncodings) {
+            if (isAccepted(acceptEncoding, contentEncoding)) {
+                return contentEncoding;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns true if the Accept-Encoding header accepts the content encoding (with a quality value greater than zero).
+     */
+    static boolean isAccepted(String acceptEncoding, String contentEncoding) {
+        if (StringUtils.isNullOrEmpty(acceptEncoding)) {
+            return false;
+        }
+
+        boolean wildcard = false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            boolean accepted = true;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        accepted = Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        accepted = false;
+                    }
+                }
+            }
+
+            if (name.equalsIgnoreCase(contentEncoding)) {
+                return accepted;
+            } else if ("*".equals(name)) {
+                wildcard = accepted;
+            }
+        }
+
+        return wildcard;
+    }
+
 }
@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.route;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ro.pippo.core.HttpConstants;
+import ro.pippo.core.PippoRuntimeException;
+import ro.pippo.core.util.CryptoUtils;
+import ro.pippo.core.util.IoUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Serves classpath resources that are compiled before sending (for example LESS or SASS to CSS).
+ * <p/>
+ * A resource is compiled once and the concurrent requests for the same resource wait
+ * for the same compilation. A compiled resource knows the resources it depends on (for example
+ * the imported stylesheets) and, outside of prod mode, it's compiled again when any of these
+ * resources is modified.
+ * <p/>
+ * With a cache directory (see {@link #useCacheDirectory(Path)}) the compiled resources are also
+ * stored on disk, keyed by the hash of the resource content, and reused after restart
+ * if the content of the resource and of its dependencies was not changed.
+ */
+public abstract class CompiledResourceHandler extends ClasspathResourceHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(CompiledResourceHandler.class);
+
+    private final ConcurrentMap<String, CompletableFuture<CompiledResource>> compiledResources = new ConcurrentHashMap<>();
+
+    private boolean minify;
+    private Path cacheDirectory;
+
+    public CompiledResourceHandler(String urlPath, String resourceBasePath) {
+        super(urlPath, resourceBasePath);
+
+        // the compiled resources are cached by this handler
+        useAssetCache(null);
+    }
+
+    public boolean isMinimized() {
+        return minify;
+    }
+
+    public CompiledResourceHandler useMinimized(boolean minimized) {
+        this.minify = minimized;
+        compiledResources.clear();
+
+        return this;
+    }
+
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Stores the compiled resources in a directory, so they survive the application restarts.
+     */
+    public CompiledResourceHandler useCacheDirectory(Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+
+        return this;
+    }
+
+    /**
+     * Compiles the resource.
+     */
+    protected abstract CompiledResource compile(URL resourceUrl) throws Exception;
+
+    protected String getContentType() {
+        return HttpConstants.ContentType.TEXT_CSS;
+    }
+
+    @Override
+    protected void streamResource(URL resourceUrl, RouteContext routeContext) {
+        try {
+            boolean checkModified = !routeContext.getApplication().getPippoSettings().isProd();
+            CompiledResource compiledResource = getCompiledResource(resourceUrl, checkModified);
+
+            // the resource is modified when any of its dependencies is modified
+            routeContext.getApplication().getHttpCacheToolkit().addEtag(routeContext, compiledResource.getLastModified());
+
+            if (routeContext.getResponse().getStatus() == HttpConstants.StatusCode.NOT_MODIFIED) {
+                // do not stream anything out, simply return 304
+                routeContext.getResponse().commit();
+            } else {
+                routeContext.getResponse().contentType(getContentType());
+                routeContext.getResponse().ok().send(compiledResource.getContent());
+            }
+        } catch (Exception e) {
+            throw new PippoRuntimeException(e, "Failed to stream resource {}", resourceUrl);
+        }
+    }
+
+    protected CompiledResource getCompiledResource(URL resourceUrl, boolean checkModified) throws Exception {
+        String key = resourceUrl.toString();
+        CompletableFuture<CompiledResource> future = compiledResources.get(key);
+        if (future == null) {
+            CompletableFuture<CompiledResource> newFuture = new CompletableFuture<>();
+            future = compiledResources.putIfAbsent(key, newFuture);
+            if (future == null) {
+                // this thread compiles and the concurrent requests wait for the result
+                try {
+                    newFuture.complete(loadCompiledResource(resourceUrl));
+                } catch (Exception e) {
+                    compiledResources.remove(key, newFuture);
+                    newFuture.completeExceptionally(e);
+                }
+
+                // just compiled
+                return getResult(newFuture);
+            }
+        }
+
+        CompiledResource compiledResource = getResult(future);
+        if (checkModified && compiledResource.isModified()) {
+            log.debug("Resource '{}' was modified, compile it again", resourceUrl);
+            compiledResources.remove(key, future);
+
+            return getCompiledResource(resourceUrl, false);
+        }
+
+        return compiledResource;
+    }
+
+    private static CompiledResource getResult(CompletableFuture<CompiledResource> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+
+            throw e;
+        }
+    }
+
+    private CompiledResource loadCompiledResource(URL resourceUrl) throws Exception {
+        if (cacheDirectory == null) {
+            return compile(resourceUrl);
+        }
+
+        String key = CryptoUtils.getHashSHA1(getClass().getName() + ':' + minify + ':' + getContentHash(resourceUrl));
+        Path cacheFile = cacheDirectory.resolve(key + ".cache");
+        CompiledResource compiledResource = readCacheFile(cacheFile);
+        if (compiledResource != null) {
+            log.debug("Read compiled resource '{}' from '{}'", resourceUrl, cacheFile);
+            return compiledResource;
+        }
+
+        long start = System.currentTimeMillis();
+        compiledResource = compile(resourceUrl);
+        log.debug("Compiled resource '{}' in {} ms", resourceUrl, System.currentTimeMillis() - start);
+        writeCacheFile(cacheFile, compiledResource);
+
+        return compiledResource;
+    }
+
+    /**
+     * The cache file contains a line for each dependency (url and content hash), an empty line and the content.
+     */
+    private CompiledResource readCacheFile(Path cacheFile) {
+        if (!Files.exists(cacheFile)) {
+            return null;
+        }
+
+        try {
+            String text = new String(Files.readAllBytes(cacheFile), StandardCharsets.UTF_8);
+            int contentIndex = text.indexOf("\n\n");
+            if (contentIndex == -1) {
+                return null;
+            }
+
+            List<URL> dependencies = new ArrayList<>();
+            for (String line : text.substring(0, contentIndex).split("\n")) {
+                int separatorIndex = line.lastIndexOf(' ');
+                if (separatorIndex <= 0) {
+                    // a corrupt cache file is a miss (it's rewritten)
+                    return null;
+                }
+
+                URL dependency = new URL(line.substring(0, separatorIndex));
+                if (!line.substring(separatorIndex + 1).equals(getContentHash(dependency))) {
+                    // a dependency was modified
+                    return null;
+                }
+                dependencies.add(dependency);
+            }
+
+            return new CompiledResource(text.substring(contentIndex + 2), dependencies);
+        } catch (IOException | RuntimeException e) {
+            // an unreadable or corrupt cache file is a miss (it's rewritten)
+            log.warn("Failed to read '{}'", cacheFile, e);
+            return null;
+        }
+    }
+
+    private void writeCacheFile(Path cacheFile, CompiledResource compiledResource) {
+        try {
+            StringBuilder text = new StringBuilder();
+            for (URL dependency : compiledResource.getDependencies()) {
+                text.append(dependency).append(' ').append(getContentHash(dependency)).append('\n');
+            }
+            text.append('\n').append(compiledResource.getContent());
+
+            // write in a temporary file and move it, so a concurrent reader never sees a partial file
+            Files.createDirectories(cacheDirectory);
+            Path tempFile = Files.createTempFile(cacheDirectory, null, ".tmp");
+            Files.write(tempFile, text.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Failed to write '{}'", cacheFile, e);
+        }
+    }
+
+    private static String getContentHash(URL url) throws IOException {
+        try (InputStream input = url.openStream()) {
+            return CryptoUtils.getHashSHA1(IoUtils.toByteArray(input));
+        }
+    }
+
+    /**
+     * The result of a compilation.
+     */
+    public static class CompiledResource {
+
+        private final String content;
+        private final List<URL> dependencies;
+        private final long[] lastModified;
+
+        /**
+         * @param content the compiled content
+         * @param dependencies the compiled resource and all resources imported by it
+         */
+        public CompiledResource(String content, Collection<URL> dependencies) {
+            this.content = content;
+            this.dependencies = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(dependencies)));
+
+            lastModified = new long[this.dependencies.size()];
+            for (int i = 0; i < lastModified.length; i++) {
+                lastModified[i] = getLastModified(this.dependencies.get(i));
+            }
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public List<URL> getDependencies() {
+            return dependencies;
+        }
+
+        /**
+         * Returns the last modified time of the most recently modified dependency.
+         */
+        public long getLastModified() {
+            long max = 0;
+            for (long value : lastModified) {
+                max = Math.max(max, value);
+            }
+
+            return max;
+        }
+
+        /**
+         * Returns true if any dependency was modified after the compilation.
+         */
+        public boolean isModified() {
+            for (int i = 0; i < lastModified.length; i++) {
+                if (getLastModified(dependencies.get(i)) != lastModified[i]) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private static long getLastModified(URL url) {
+            try {
+                if ("file".equals(url.getProtocol())) {
+                    // don't open a connection (and an input stream) for a file
+                    return new File(url.toURI()).lastModified();
+                }
+
+                return url.openConnection().getLastModified();
+            } catch (IOException | URISyntaxException e) {
+                log.debug("Failed to read lastModified property for {}", url, e);
+                return 0;
+            }
+        }
+
+    }
+
+}
@@ -20,20 +20,20 @@ import org.slf4j.LoggerFactory;
 import ro.pippo.core.HttpConstants;
 import ro.pippo.core.PippoConstants;
 import ro.pippo.core.PippoRuntimeException;
+import ro.pippo.core.route.RouteTrie.BindingGroup;
 import ro.pippo.core.util.StringUtils;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -55,13 +55,26 @@ public class DefaultRouter implements Router {
     // This regex matches everything in between path slashes.
     private static final String VARIABLE_ROUTES_DEFAULT_REGEX = "(?<%s>[^/]+)";
 
-    // This regex works for both {myParam} AND {myParam: .*}
-    private static final String VARIABLE_PART_PATTERN_WITH_PLACEHOLDER = "\\{(%s)(:\\s([^}]*))?\\}";
-
     private static final String PATH_PARAMETER_REGEX_GROUP_NAME_PREFIX = "param";
 
     // key = request method
     private Map<String, List<PatternBinding>> bindingsCache;
+    // key = uri pattern
+    private Map<String, RoutePattern> routePatterns;
+    // key = request method, value = the bindings for request method and for ALL
+    // it's an immutable snapshot recreated on each route change
+    private volatile Map<String, RouteTrie> bindingsIndex;
+    // key = route name or uri pattern (used by uriFor)
+    private volatile Map<String, PatternBinding> reverseIndex;
+    // key = resource handler class (used by uriPatternFor)
+    private volatile Map<Class<?>, Route> resourceRoutes;
+    private long bindingsCount;
+
+    // an optional cache for the result of findRoutes (see setMatchCacheSize)
+    private volatile RouteMatchCache matchCache;
+    private int matchCacheSize;
+    private final LongAdder matchCacheHits = new LongAdder();
+    private final LongAdder matchCacheMisses = new LongAdder();
 
     private List<Route> routes;
     private Set<String> ignorePaths;
@@ -74,6 +87,10 @@ public class DefaultRouter implements Router {
         ignorePaths = new TreeSet<>();
         cache = new HashMap<>();
         bindingsCache = new HashMap<>();
+        routePatterns = new HashMap<>();
+        bindingsIndex = Collections.emptyMap();
+        reverseIndex = Collections.emptyMap();
+        resourceRoutes = Collections.emptyMap();
         contextPath = "";
         applicationPath = "";
     }
@@ -147,26 +164,71 @@ public class DefaultRouter implements Router {
     public List<RouteMatch> findRoutes(String requestMethod, String requestUri) {
         log.trace("Finding route matches for {} '{}'", requestMethod, requestUri);
 
-        List<RouteMatch> routeMatches = new ArrayList<>();
+        // read the cache before the index (see updateBindingsIndex)
+        RouteMatchCache matchCache = this.matchCache;
+        if (matchCache != null) {
+            List<RouteMatch> routeMatches = matchCache.get(requestMethod, requestUri);
+            if (routeMatches != null) {
+                matchCacheHits.increment();
+                log.debug("Found {} cached route matches for {} '{}'", routeMatches.size(), requestMethod, requestUri);
 
-        List<PatternBinding> bindings = getBindings(requestMethod);
-        for (Route route : routes) { // to preserve the routes order
-            for (PatternBinding binding : bindings) {
-                if (route.equals(binding.getRoute()) && binding.getPattern().matcher(requestUri).matches()) {
-                    // TODO improve (it's possible to have the same uriPattern for many routes => same parameters)
-                    routeMatches.add(new RouteMatch(route, getParameters(binding, requestUri)));
-                    break;
-                }
+                // the route context consumes the list
+                return new ArrayList<>(routeMatches);
             }
+            matchCacheMisses.increment();
         }
 
+        String[] uriSegments = RouteTrie.split(requestUri);
+        List<BindingGroup> groups = new ArrayList<>();
+        List<Map<String, String>> parameters = new ArrayList<>();
+        RouteTrie trie = getBindings(requestMethod);
+        if (trie != null) {
+            trie.find(requestUri, uriSegments, groups, parameters);
+        }
+
+        List<RouteMatch> routeMatches = getRouteMatches(groups, parameters);
+
         log.debug("Found {} route matches for {} '{}'", routeMatches.size(), requestMethod, requestUri);
 
+        if (matchCache != null) {
+            matchCache.put(requestMethod, requestUri, new ArrayList<>(routeMatches));
+        }
+
         return routeMatches;
     }
 
+    /**
+     * Returns the maximum number of (request method, request uri) pairs
+     * for which the route matches are cached.
+     */
+    public int getMatchCacheSize() {
+        return matchCacheSize;
+    }
+
+    /**
+     * Enables a bounded cache for the result of {@link #findRoutes(String, String)}.
+     * It's useful when most requests hit a small set of concrete uris because
+     * the repeated uris skip the pattern matching entirely.
+     * The cache is invalidated on each route change.
+     * A value of 0 (default) disables the cache.
+     *
+     * @param matchCacheSize
+     */
+    public synchronized void setMatchCacheSize(int matchCacheSize) {
+        this.matchCacheSize = matchCacheSize;
+        matchCache = (matchCacheSize > 0) ? new RouteMatchCache(matchCacheSize) : null;
+    }
+
+    public long getMatchCacheHits() {
+        return matchCacheHits.sum();
+    }
+
+    public long getMatchCacheMisses() {
+        return matchCacheMisses.sum();
+    }
+
     @Override
-    public void addRoute(Route route) {
+    public synchronized void addRoute(Route route) {
         log.debug("Add route for {} '{}'", route.getRequestMethod(), route.getUriPattern());
         validateRoute(route);
         routes.add(route);
@@ -179,10 +241,11 @@ public class DefaultRouter implements Router {
         cache.put(route.getRequestMethod(), cacheEntry);
 
         addBinding(route);
+        updateBindingsIndex();
     }
 
     @Override
-    public void removeRoute(Route route) {
+    public synchronized void removeRoute(Route route) {
         log.debug("Removing route for {} '{}'", route.getRequestMethod(), route.getUriPattern());
         routes.remove(route);
 
@@ -192,6 +255,7 @@ public class DefaultRouter implements Router {
         }
 
         removeBinding(route);
+        updateBindingsIndex();
     }
 
     @Override
@@ -261,27 +325,21 @@ public class DefaultRouter implements Router {
     }
 
     private Route getRoute(Class<? extends ResourceHandler> resourceHandlerClass) {
-        List<Route> routes = getRoutes();
-        for (Route route : routes) {
-            RouteHandler routeHandler = route.getRouteHandler();
-            if (resourceHandlerClass.isAssignableFrom(routeHandler.getClass())) {
-                ClasspathResourceHandler resourceHandler = (ClasspathResourceHandler) routeHandler;
-                if (resourceHandlerClass == resourceHandler.getClass()) {
-                    return route;
-                }
-            }
-        }
-
-        return null;
+        return resourceRoutes.get(resourceHandlerClass);
     }
 
     private void addBinding(Route route) {
         String uriPattern = route.getUriPattern();
-        // TODO improve (it's possible to have the same uriPattern for many routes => same pattern)
-        String regex = getRegex(uriPattern);
-        Pattern pattern = Pattern.compile(regex);
-        List<String> parameterNames = getParameterNames(uriPattern);
-        PatternBinding binding = new PatternBinding(pattern, route, parameterNames);
+        // the routes with the same uriPattern share the compiled pattern
+        RoutePattern routePattern = routePatterns.get(uriPattern);
+        if (routePattern == null) {
+            String regex = getRegex(uriPattern);
+            Pattern pattern = Pattern.compile(regex);
+            UriTemplate uriTemplate = getUriTemplate(uriPattern);
+            routePattern = new RoutePattern(uriPattern, pattern, uriTemplate);
+            routePatterns.put(uriPattern, routePattern);
+        }
+        PatternBinding binding = new PatternBinding(routePattern, route, bindingsCount++);
         String requestMethod = route.getRequestMethod();
         if (!bindingsCache.containsKey(requestMethod)) {
             bindingsCache.put(requestMethod, new ArrayList<PatternBinding>());
@@ -290,38 +348,129 @@ public class DefaultRouter implements Router {
     }
 
     private void removeBinding(Route route) {
-        String nameOrUriPattern = StringUtils.isNullOrEmpty(route.getName()) ? route.getUriPattern() : route.getName();
-        PatternBinding binding = getBinding(nameOrUriPattern);
-        bindingsCache.get(route.getRequestMethod()).remove(binding);
+        List<PatternBinding> bindings = bindingsCache.get(route.getRequestMethod());
+        if (bindings == null) {
+            return;
+        }
+
+        // the first binding for this route (the same one as removed from routes)
+        for (PatternBinding binding : bindings) {
+            if (route.equals(binding.getRoute())) {
+                bindings.remove(binding);
+                break;
+            }
+        }
     }
 
     private PatternBinding getBinding(String nameOrUriPattern) {
-        Collection<List<PatternBinding>> values = bindingsCache.values();
-        Route route;
-        for (List<PatternBinding> bindings : values) {
+        return reverseIndex.get(nameOrUriPattern);
+    }
+
+    /**
+     * Merges the bindings of the matched groups in routes order.
+     * All routes of a group share the same path parameters.
+     */
+    private List<RouteMatch> getRouteMatches(List<BindingGroup> groups, List<Map<String, String>> parameters) {
+        int groupCount = groups.size();
+        if (groupCount == 0) {
+            return new ArrayList<>();
+        }
+
+        if (groupCount == 1) {
+            List<PatternBinding> bindings = groups.get(0).getBindings();
+            List<RouteMatch> routeMatches = new ArrayList<>(bindings.size());
             for (PatternBinding binding : bindings) {
-                route = binding.getRoute();
-                if (nameOrUriPattern.equals(route.getName()) || nameOrUriPattern.equals(route.getUriPattern())) {
-                    return binding;
+                routeMatches.add(new RouteMatch(binding.getRoute(), parameters.get(0)));
+            }
+
+            return routeMatches;
+        }
+
+        int[] positions = new int[groupCount];
+        int size = 0;
+        for (BindingGroup group : groups) {
+            size += group.getBindings().size();
+        }
+
+        List<RouteMatch> routeMatches = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            // the group with the next route
+            int next = -1;
+            long nextOrder = Long.MAX_VALUE;
+            for (int j = 0; j < groupCount; j++) {
+                List<PatternBinding> bindings = groups.get(j).getBindings();
+                if ((positions[j] < bindings.size()) && (bindings.get(positions[j]).getOrder() < nextOrder)) {
+                    next = j;
+                    nextOrder = bindings.get(positions[j]).getOrder();
                 }
             }
+
+            PatternBinding binding = groups.get(next).getBindings().get(positions[next]++);
+            routeMatches.add(new RouteMatch(binding.getRoute(), parameters.get(next)));
         }
 
-        return null;
+        return routeMatches;
     }
 
-    private List<PatternBinding> getBindings(String requestMethod) {
-        List<PatternBinding> bindings = new ArrayList<>();
+    private RouteTrie getBindings(String requestMethod) {
+        Map<String, RouteTrie> index = bindingsIndex;
+        RouteTrie bindings = index.get(requestMethod);
+
+        // no route for this request method, only the ALL routes can match
+        return (bindings != null) ? bindings : index.get(HttpConstants.Method.ALL);
+    }
 
-        if (bindingsCache.containsKey(requestMethod)) {
-            bindings.addAll(bindingsCache.get(requestMethod));
+    /**
+     * Recreates the per request method index of bindings, the reverse routing indexes
+     * and invalidates the match cache.
+     * The lookup in {@link #findRoutes(String, String)} is lock free because
+     * the new index is published (volatile write) only after it's completely built.
+     * The index is published before the new cache so a route matches list found with
+     * an old index never ends up in the new cache.
+     */
+    private void updateBindingsIndex() {
+        List<PatternBinding> allBindings = bindingsCache.get(HttpConstants.Method.ALL);
+
+        Map<String, RouteTrie> index = new HashMap<>();
+        for (Entry<String, List<PatternBinding>> entry : bindingsCache.entrySet()) {
+            String requestMethod = entry.getKey();
+            List<PatternBinding> bindings = new ArrayList<>(entry.getValue());
+            if ((allBindings != null) && !HttpConstants.Method.ALL.equals(requestMethod)) {
+                bindings.addAll(allBindings);
+                bindings.sort((binding1, binding2) -> Long.compare(binding1.getOrder(), binding2.getOrder()));
+            }
+            index.put(requestMethod, new RouteTrie(bindings));
         }
 
-        if (bindingsCache.containsKey(HttpConstants.Method.ALL)) {
-            bindings.addAll(bindingsCache.get(HttpConstants.Method.ALL));
+        List<PatternBinding> orderedBindings = new ArrayList<>();
+        bindingsCache.values().forEach(orderedBindings::addAll);
+        orderedBindings.sort((binding1, binding2) -> Long.compare(binding1.getOrder(), binding2.getOrder()));
+
+        // the first route wins; the names have priority over uri patterns
+        Map<String, PatternBinding> reverseIndex = new HashMap<>();
+        Map<Class<?>, Route> resourceRoutes = new HashMap<>();
+        for (PatternBinding binding : orderedBindings) {
+            Route route = binding.getRoute();
+            if (!StringUtils.isNullOrEmpty(route.getName())) {
+                reverseIndex.putIfAbsent(route.getName(), binding);
+            }
+            if (route.getRouteHandler() instanceof ResourceHandler) {
+                resourceRoutes.putIfAbsent(route.getRouteHandler().getClass(), route);
+            }
         }
+        for (PatternBinding binding : orderedBindings) {
+            reverseIndex.putIfAbsent(binding.getRoute().getUriPattern(), binding);
+        }
+
+        // forget the patterns of the removed routes
+        routePatterns.keySet().retainAll(reverseIndex.keySet());
 
-        return bindings;
+        this.reverseIndex = reverseIndex;
+        this.resourceRoutes = resourceRoutes;
+        bindingsIndex = index;
+        if (matchCache != null) {
+            matchCache = new RouteMatchCache(matchCacheSize);
+        }
     }
 
     /**
@@ -364,7 +513,7 @@ public class DefaultRouter implements Router {
         return buffer.toString();
     }
 
-    private static String getPathParameterRegexGroupName(int pathParameterIndex) {
+    static String getPathParameterRegexGroupName(int pathParameterIndex) {
         return PATH_PARAMETER_REGEX_GROUP_NAME_PREFIX + pathParameterIndex;
     }
 
@@ -384,149 +533,92 @@ public class DefaultRouter implements Router {
     }
 
     /**
-     * Extracts the name of the parameters from a route
+     * Parses an uri pattern in literal parts and parameter placeholders.
      * <p/>
      * /{my_id}/{my_name}
      * <p/>
-     * would return a List with "my_id" and "my_name"
+     * would return a template with the parameter names "my_id" and "my_name"
      *
      * @param uriPattern
-     * @return a list with the names of all parameters in the url pattern
+     * @return the uri template
      */
-    private List<String> getParameterNames(String uriPattern) {
-        List<String> list = new ArrayList<>();
+    private UriTemplate getUriTemplate(String uriPattern) {
+        List<String> literals = new ArrayList<>();
+        List<String> parameterNames = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
 
         Matcher matcher = PATTERN_FOR_VARIABLE_PARTS_OF_ROUTE.matcher(uriPattern);
+        int start = 0;
         while (matcher.find()) {
+            literals.add(uriPattern.substring(start, matcher.start()));
             // group(1) is the name of the group. Must be always there...
             // "/assets/{file}" and "/assets/{file: [a-zA-Z][a-zA-Z_0-9]}"
             // will return file.
-            list.add(matcher.group(1));
+            parameterNames.add(matcher.group(1));
+            placeholders.add(matcher.group());
+            start = matcher.end();
         }
+        literals.add(uriPattern.substring(start));
 
-        return list;
-    }
-
-    private Map<String, String> getParameters(PatternBinding binding, String requestUri) {
-        if (binding.getParameterNames().isEmpty()) {
-            return Collections.EMPTY_MAP;
-        }
-
-        Map<String, String> parameters = new HashMap<>();
-        List<String> parameterNames = binding.getParameterNames();
-        Matcher matcher = binding.getPattern().matcher(requestUri);
-        matcher.matches();
-        int groupCount = matcher.groupCount();
-        if (groupCount > 0) {
-            for (int i = 0; i < parameterNames.size(); i++) {
-                parameters.put(parameterNames.get(i), matcher.group(getPathParameterRegexGroupName(i)));
-            }
-        }
-
-        return parameters;
+        return new UriTemplate(literals, parameterNames, placeholders);
     }
 
     private String uriFor(PatternBinding binding, Map<String, Object> parameters) {
         Route route = binding.getRoute();
-        boolean isResourceRoute = ResourceHandler.class.isAssignableFrom(route.getRouteHandler().getClass());
+        UriTemplate uriTemplate = binding.getRoutePattern().getUriTemplate();
 
-        List<String> parameterNames = binding.getParameterNames();
+        List<String> parameterNames = uriTemplate.getParameterNames();
         if (!parameters.keySet().containsAll(parameterNames)) {
             log.error("You must provide values for all path parameters. {} vs {}", parameterNames, parameters.keySet());
         }
 
-        Map<String, Object> queryParameters = new HashMap<>(parameters.size());
-
-        String uri = route.getUriPattern();
+        StringBuilder uri = new StringBuilder(route.getUriPattern().length() + 16);
 
-        for (Entry<String, Object> parameterPair : parameters.entrySet()) {
-            boolean foundAsPathParameter = false;
-
-            StringBuffer sb = new StringBuffer();
-            String regex = String.format(VARIABLE_PART_PATTERN_WITH_PLACEHOLDER, parameterPair.getKey());
-            Pattern pattern = Pattern.compile(regex);
-            Matcher matcher = pattern.matcher(uri);
-            while (matcher.find()) {
-                String pathValue = parameterPair.getValue().toString();
-                if (isResourceRoute && ResourceHandler.PATH_PARAMETER.equals(parameterPair.getKey())) {
-                    ResourceHandler resourceHandler = (ResourceHandler) route.getRouteHandler();
-                    if (resourceHandler.isVersioned()) {
-                        pathValue = resourceHandler.injectVersion(pathValue);
-                    }
-                }
-                matcher.appendReplacement(sb, pathValue);
-                foundAsPathParameter = true;
-            }
-
-            matcher.appendTail(sb);
-            uri = sb.toString();
-
-            if (!foundAsPathParameter) {
-                queryParameters.put(parameterPair.getKey(), parameterPair.getValue());
+        // replace the path parameters
+        int parameterCount = uriTemplate.getParameterCount();
+        for (int i = 0; i < parameterCount; i++) {
+            uri.append(uriTemplate.getLiteral(i));
+            String parameterName = uriTemplate.getParameterName(i);
+            Object parameterValue = parameters.get(parameterName);
+            if (parameterValue != null) {
+                uri.append(getPathValue(route, parameterName, parameterValue.toString()));
+            } else {
+                uri.append(uriTemplate.getPlaceholder(i));
             }
         }
-
-        // now prepare the query string for this url if we got some query params
-        if (!queryParameters.isEmpty()) {
-            // add remaining parameters as query parameters
-            StringBuilder query = new StringBuilder();
-            Iterator<Entry<String, Object>> iterator = queryParameters.entrySet().iterator();
-            while (iterator.hasNext()) {
-                Entry<String, Object> parameterEntry = iterator.next();
-                String parameterName = parameterEntry.getKey();
-                Object parameterValue = parameterEntry.getValue();
-                String encodedParameterValue;
-                try {
-                    encodedParameterValue = URLEncoder.encode(parameterValue.toString(), PippoConstants.UTF8);
-                } catch (UnsupportedEncodingException e) {
-                    throw new PippoRuntimeException(e, "Cannot encode the parameter value '{}'", parameterValue.toString());
-                }
-                query.append(parameterName).append("=").append(encodedParameterValue);
-
-                if (iterator.hasNext()) {
-                    query.append("&");
-                }
+        uri.append(uriTemplate.getLiteral(parameterCount));
+
+        // add remaining parameters as query parameters
+        char separator = '?';
+        for (Entry<String, Object> parameterEntry : parameters.entrySet()) {
+            String parameterName = parameterEntry.getKey();
+            if (parameterNames.contains(parameterName)) {
+                continue;
             }
 
-            uri += "?" + query;
+            Object parameterValue = parameterEntry.getValue();
+            String encodedParameterValue;
+            try {
+                encodedParameterValue = URLEncoder.encode(parameterValue.toString(), PippoConstants.UTF8);
+            } catch (UnsupportedEncodingException e) {
+                throw new PippoRuntimeException(e, "Cannot encode the parameter value '{}'", parameterValue.toString());
+            }
+            uri.append(separator).append(parameterName).append('=').append(encodedParameterValue);
+            separator = '&';
         }
 
-        return uri;
+        return uri.toString();
     }
 
-    private class PatternBinding {
-
-        private final Pattern pattern;
-        private final Route route;
-        private final List<String> parameterNames;
-
-        private PatternBinding(Pattern pattern, Route route, List<String> parameterNames) {
-            this.pattern = pattern;
-            this.route = route;
-            this.parameterNames = parameterNames;
-        }
-
-        public Pattern getPattern() {
-            return pattern;
-        }
-
-        public Route getRoute() {
-            return route;
-        }
-
-        public List<String> getParameterNames() {
-            return parameterNames;
-        }
-
-        @Override
-        public String toString() {
-            return "PatternBinding{" +
-                "pattern=" + pattern +
-                ", route=" + route +
-                ", parameterNames=" + parameterNames +
-                '}';
+    private String getPathValue(Route route, String parameterName, String pathValue) {
+        if (ResourceHandler.PATH_PARAMETER.equals(parameterName) && (route.getRouteHandler() instanceof ResourceHandler)) {
+            ResourceHandler resourceHandler = (ResourceHandler) route.getRouteHandler();
+            if (resourceHandler.isVersioned()) {
+                return resourceHandler.injectVersion(pathValue);
+            }
         }
 
+        return pathValue;
     }
 
 }
@@ -19,6 +19,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ro.pippo.core.HttpConstants;
 import ro.pippo.core.PippoRuntimeException;
+import ro.pippo.core.util.IoUtils;
 import ro.pippo.core.util.StringUtils;
 
 import java.io.File;
@@ -267,14 +268,24 @@ public class DirectoryHandler implements RouteHandler {
     protected void sendResource(URL resourceUrl, RouteContext routeContext) throws IOException {
         String filename = resourceUrl.getFile();
         String mimeType = routeContext.getApplication().getMimeTypes().getContentType(filename);
+        // a real file is transferred without a heap copy when the container supports it (see FileTransfer)
+        File file = IoUtils.toFile(resourceUrl);
         if (!StringUtils.isNullOrEmpty(mimeType)) {
             // stream the resource
             log.debug("Streaming as resource '{}'", resourceUrl);
-            routeContext.getResponse().ok().chunked(chunked).resource(resourceUrl.openStream());
+            if (file != null) {
+                routeContext.getResponse().ok().chunked(chunked).resource(file);
+            } else {
+                routeContext.getResponse().ok().chunked(chunked).resource(resourceUrl.openStream());
+            }
         } else {
             // stream the file
             log.debug("Streaming as file '{}'", resourceUrl);
-            routeContext.getResponse().ok().chunked(chunked).file(filename, resourceUrl.openStream());
+            if (file != null) {
+                routeContext.getResponse().ok().chunked(chunked).file(file);
+            } else {
+                routeContext.getResponse().ok().chunked(chunked).file(filename, resourceUrl.openStream());
+            }
         }
     }
 
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.route;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A compact and immutable map with the path parameters of a {@link RouteMatch}.
+ * The parameter names are shared by all matches of an uri pattern and the values are
+ * kept in an array on the same positions, so a match allocates only the values array.
+ */
+public final class PathParameters extends AbstractMap<String, String> {
+
+    private final String[] names;
+    private final String[] values;
+
+    PathParameters(String[] names, String[] values) {
+        this.names = names;
+        this.values = values;
+    }
+
+    @Override
+    public int size() {
+        return names.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) != -1;
+    }
+
+    @Override
+    public String get(Object key) {
+        int index = indexOf(key);
+
+        return (index != -1) ? values[index] : null;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public String getValue(int index) {
+        return values[index];
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < names.length;
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+
+                        Entry<String, String> entry = new SimpleImmutableEntry<>(names[index], values[index]);
+                        index++;
+
+                        return entry;
+                    }
+
+                };
+            }
+
+            @Override
+            public int size() {
+                return names.length;
+            }
+
+        };
+    }
+
+    private int indexOf(Object key) {
+        // usually there are only a few parameters so a linear search is faster than hashing
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(key)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.route;
+
+/**
+ * Binds a {@link Route} to its (shared) {@link RoutePattern}.
+ */
+class PatternBinding {
+
+    private final RoutePattern routePattern;
+    private final Route route;
+    private final long order;
+
+    PatternBinding(RoutePattern routePattern, Route route, long order) {
+        this.routePattern = routePattern;
+        this.route = route;
+        this.order = order;
+    }
+
+    public RoutePattern getRoutePattern() {
+        return routePattern;
+    }
+
+    public Route getRoute() {
+        return route;
+    }
+
+    /**
+     * The position of this binding in the routes list.
+     */
+    public long getOrder() {
+        return order;
+    }
+
+    @Override
+    public String toString() {
+        return "PatternBinding{" +
+            "routePattern=" + routePattern +
+            ", route=" + route +
+            '}';
+    }
+
+}
@@ -29,6 +29,14 @@ public abstract class ResourceHandler implements RouteHandler {
 
     public static final String PATH_PARAMETER = "path";
 
+    /**
+     * The request attribute set (to true) when the requested path contains the current version fragment
+     * of the resource (a stale version is served, but it's not marked); see {@link #isCurrentVersion(String, String)}.
+     * The content of a versioned resource never changes (a new content has a new version), so
+     * {@link ro.pippo.core.util.HttpCacheToolkit} marks the response as immutable.
+     */
+    public static final String VERSIONED_ATTRIBUTE = "ro.pippo.core.route.versioned";
+
     private final String uriPattern;
     private boolean versioned = true;
 
@@ -51,7 +59,13 @@ public abstract class ResourceHandler implements RouteHandler {
         log.trace("Request resource '{}'", resourcePath);
 
         if (versioned) {
-            resourcePath = removeVersion(resourcePath);
+            String unversionedResourcePath = removeVersion(resourcePath);
+            if (!unversionedResourcePath.equals(resourcePath)) {
+                if (isCurrentVersion(resourcePath, unversionedResourcePath)) {
+                    routeContext.getRequest().getHttpServletRequest().setAttribute(VERSIONED_ATTRIBUTE, Boolean.TRUE);
+                }
+                resourcePath = unversionedResourcePath;
+            }
         }
 
         handleResource(resourcePath, routeContext);
@@ -71,6 +85,15 @@ public abstract class ResourceHandler implements RouteHandler {
      */
     public abstract String removeVersion(String resourcePath);
 
+    /**
+     * Returns true if the versioned resource path contains the current version of the resource.
+     * It's called for each request of a versioned resource path, so override it when
+     * {@link #injectVersion(String)} is expensive.
+     */
+    protected boolean isCurrentVersion(String versionedResourcePath, String resourcePath) {
+        return injectVersion(resourcePath).equals(versionedResourcePath);
+    }
+
     public boolean isVersioned() {
         return versioned;
     }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.route;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ro.pippo.core.PippoRuntimeException;
+import ro.pippo.core.util.CryptoUtils;
+import ro.pippo.core.util.IoUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * The content hash fingerprints of the classpath resources under a base path, built once at startup.
+ * A {@link ClasspathResourceHandler} with a manifest uses the fingerprint as the version of a resource
+ * (see {@link ResourceHandler#injectVersion(String)}), so a versioned url changes only when the content
+ * of the resource changes and the version is a map read (no {@link java.net.URLConnection}).
+ * <p/>
+ * The resources are found by scanning the base path in all classpath directories and jars;
+ * when a resource is in more places, the first one (in the classpath order) wins, like for
+ * {@link ClassLoader#getResource(String)}. A jar without directory entries is not found by the scan;
+ * its resources are versioned by the last modified time.
+ */
+public class ResourceManifest {
+
+    private static final Logger log = LoggerFactory.getLogger(ResourceManifest.class);
+
+    /**
+     * The number of hex characters (of the SHA-1 hash) in a fingerprint.
+     */
+    public static final int FINGERPRINT_LENGTH = 16;
+
+    // resource name -> fingerprint
+    private final Map<String, String> fingerprints;
+
+    public ResourceManifest(Map<String, String> fingerprints) {
+        this.fingerprints = Collections.unmodifiableMap(new HashMap<>(fingerprints));
+    }
+
+    /**
+     * Returns the fingerprint of the resource or null if the resource is not in the manifest.
+     *
+     * @param resourceName the classpath resource name (for example "public/css/main.css")
+     */
+    public String getFingerprint(String resourceName) {
+        return fingerprints.get(resourceName);
+    }
+
+    public Map<String, String> getFingerprints() {
+        return fingerprints;
+    }
+
+    public int size() {
+        return fingerprints.size();
+    }
+
+    /**
+     * Scans the base path in the classpath of the class loader and computes the fingerprint of each resource.
+     */
+    public static ResourceManifest build(ClassLoader classLoader, String basePath) {
+        long start = System.currentTimeMillis();
+        Map<String, String> fingerprints = new HashMap<>();
+        try {
+            Enumeration<URL> urls = classLoader.getResources(basePath);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                scan(url, basePath, fingerprints);
+            }
+        } catch (IOException | URISyntaxException e) {
+            throw new PippoRuntimeException(e, "Failed to build the manifest of '{}'", basePath);
+        }
+        log.debug("Built the manifest of '{}' ({} resources) in {} ms", basePath, fingerprints.size(),
+            System.currentTimeMillis() - start);
+
+        return new ResourceManifest(fingerprints);
+    }
+
+    private static String getFingerprint(InputStream input) throws IOException {
+        return CryptoUtils.getHashSHA1(IoUtils.toByteArray(input)).substring(0, FINGERPRINT_LENGTH);
+    }
+
+    private static void scan(URL url, String basePath, Map<String, String> fingerprints) throws IOException, URISyntaxException {
+        String protocol = url.getProtocol();
+        if ("file".equals(protocol)) {
+            Path directory = Paths.get(url.toURI());
+            try (Stream<Path> paths = Files.walk(directory)) {
+                Iterator<Path> it = paths.filter(Files::isRegularFile).iterator();
+                while (it.hasNext()) {
+                    Path path = it.next();
+                    String resourceName = basePath + "/" + directory.relativize(path).toString().replace('\\', '/');
+                    if (!fingerprints.containsKey(resourceName)) {
+                        try (InputStream input = Files.newInputStream(path)) {
+                            fingerprints.put(resourceName, getFingerprint(input));
+                        }
+                    }
+                }
+            }
+        } else if ("jar".equals(protocol)) {
+            String prefix = basePath + "/";
+            // the jar file is cached and shared by the url connections, so don't close it
+            JarFile jarFile = ((JarURLConnection) url.openConnection()).getJarFile();
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().startsWith(prefix) && !fingerprints.containsKey(entry.getName())) {
+                    try (InputStream input = jarFile.getInputStream(entry)) {
+                        fingerprints.put(entry.getName(), getFingerprint(input));
+                    }
+                }
+            }
+        } else {
+            log.warn("Cannot scan '{}' for resources", url);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.route;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A bounded cache for the result of {@link Router#findRoutes(String, String)}.
+ * When the maximum size is exceeded the oldest entries are evicted (FIFO).
+ * The reads are lock free.
+ */
+class RouteMatchCache {
+
+    private final int maximumSize;
+    private final Map<String, List<RouteMatch>> entries;
+    private final Queue<String> keys; // in insertion order
+
+    public RouteMatchCache(int maximumSize) {
+        this.maximumSize = maximumSize;
+
+        entries = new ConcurrentHashMap<>();
+        keys = new ConcurrentLinkedQueue<>();
+    }
+
+    public List<RouteMatch> get(String requestMethod, String requestUri) {
+        return entries.get(getKey(requestMethod, requestUri));
+    }
+
+    public void put(String requestMethod, String requestUri, List<RouteMatch> routeMatches) {
+        String key = getKey(requestMethod, requestUri);
+        if (entries.putIfAbsent(key, routeMatches) == null) {
+            keys.add(key);
+            while (entries.size() > maximumSize) {
+                String eldestKey = keys.poll();
+                if (eldestKey == null) {
+                    break;
+                }
+                entries.remove(eldestKey);
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static String getKey(String requestMethod, String requestUri) {
+        // the request method doesn't contain space
+        return requestMethod + ' ' + requestUri;
+    }
+
+}
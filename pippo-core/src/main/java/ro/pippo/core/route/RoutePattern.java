@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.route;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An uri pattern compiled once and shared by all routes with the same uri pattern.
+ * It keeps the compiled regex, the uri template and the leading segments of the uri pattern
+ * that can be matched without regex (see {@link RouteTrie}).
+ */
+class RoutePattern {
+
+    // the characters with special meaning in a java regex
+    private static final String REGEX_META_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final String uriPattern;
+    private final Pattern pattern;
+    private final UriTemplate uriTemplate;
+    private final String[] parameterNames;
+    private final String[] groupNames;
+
+    // literal segments (as is) and parameter segments (as null)
+    private final List<String> segments;
+    private final boolean regexRequired;
+
+    RoutePattern(String uriPattern, Pattern pattern, UriTemplate uriTemplate) {
+        this.uriPattern = uriPattern;
+        this.pattern = pattern;
+        this.uriTemplate = uriTemplate;
+
+        parameterNames = uriTemplate.getParameterNames().toArray(new String[0]);
+        groupNames = new String[parameterNames.length];
+        for (int i = 0; i < groupNames.length; i++) {
+            groupNames[i] = DefaultRouter.getPathParameterRegexGroupName(i);
+        }
+
+        String[] uriSegments = uriPattern.split("/", -1);
+        List<String> segments = new ArrayList<>(uriSegments.length);
+        boolean regexRequired = hasTopLevelAlternation(uriPattern);
+        if (!regexRequired) {
+            for (String segment : uriSegments) {
+                if (isLiteralSegment(segment)) {
+                    segments.add(segment);
+                } else if (isParameterSegment(segment)) {
+                    segments.add(null);
+                } else {
+                    regexRequired = true;
+                    if (startsWithQuantifier(segment) && !segments.isEmpty()) {
+                        // the quantifier applies to the previous slash (for example "/contact/?")
+                        segments.remove(segments.size() - 1);
+                    }
+                    break;
+                }
+            }
+        }
+
+        this.segments = Collections.unmodifiableList(segments);
+        this.regexRequired = regexRequired;
+    }
+
+    public String getUriPattern() {
+        return uriPattern;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    public List<String> getParameterNames() {
+        return uriTemplate.getParameterNames();
+    }
+
+    public UriTemplate getUriTemplate() {
+        return uriTemplate;
+    }
+
+    /**
+     * Returns the leading segments of the uri pattern that can be matched without regex.
+     * A literal segment is returned as is and a parameter segment (<code>{name}</code>) as <code>null</code>.
+     * If {@link #isRegexRequired()} returns false these are all the segments of the uri pattern.
+     */
+    public List<String> getSegments() {
+        return segments;
+    }
+
+    /**
+     * Returns true if the uri pattern contains other regex constructs than <code>{name}</code>
+     * and the regex must be evaluated to decide if a request uri is a match.
+     */
+    public boolean isRegexRequired() {
+        return regexRequired;
+    }
+
+    /**
+     * Returns the path parameters if the request uri matches this pattern, otherwise null.
+     * If the regex is not required, the request uri must be already matched by segments (see {@link RouteTrie}).
+     *
+     * @param requestUri
+     * @param uriSegments the request uri split by '/'
+     * @return the path parameters or null
+     */
+    public Map<String, String> match(String requestUri, String[] uriSegments) {
+        if (!regexRequired) {
+            return getParameters(uriSegments);
+        }
+
+        Matcher matcher = pattern.matcher(requestUri);
+        if (!matcher.matches()) {
+            return null;
+        }
+
+        if (parameterNames.length == 0) {
+            return Collections.emptyMap();
+        }
+
+        String[] values = new String[parameterNames.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = matcher.group(groupNames[i]);
+        }
+
+        return new PathParameters(parameterNames, values);
+    }
+
+    @Override
+    public String toString() {
+        return "RoutePattern{" +
+            "pattern=" + pattern +
+            ", parameterNames=" + getParameterNames() +
+            '}';
+    }
+
+    private Map<String, String> getParameters(String[] uriSegments) {
+        if (parameterNames.length == 0) {
+            return Collections.emptyMap();
+        }
+
+        // the parameters are the uri segments in the place of the {name} segments
+        String[] values = new String[parameterNames.length];
+        int parameterIndex = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            if (segments.get(i) == null) {
+                values[parameterIndex++] = uriSegments[i];
+            }
+        }
+
+        return new PathParameters(parameterNames, values);
+    }
+
+    private static boolean isLiteralSegment(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if (REGEX_META_CHARACTERS.indexOf(segment.charAt(i)) != -1) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * A parameter segment is <code>{name}</code> without a custom regex, so it matches <code>[^/]+</code>.
+     */
+    private static boolean isParameterSegment(String segment) {
+        int length = segment.length();
+        if ((length < 3) || (segment.charAt(0) != '{') || (segment.charAt(length - 1) != '}')) {
+            return false;
+        }
+
+        for (int i = 1; i < length - 1; i++) {
+            char ch = segment.charAt(i);
+            if ((ch == '{') || (ch == '}') || (ch == ':')) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean startsWithQuantifier(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+
+        char ch = segment.charAt(0);
+        if ((ch == '?') || (ch == '*') || (ch == '+')) {
+            return true;
+        }
+
+        // "{2}" or "{2,}"
+        return (ch == '{') && (segment.length() > 1) && Character.isDigit(segment.charAt(1));
+    }
+
+    /**
+     * Returns true if the uri pattern contains a '|' outside of any group (for example "/contact|/about").
+     * In this case the segments before '|' are not a prefix for all matches.
+     */
+    private static boolean hasTopLevelAlternation(String uriPattern) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < uriPattern.length(); i++) {
+            char ch = uriPattern.charAt(i);
+            if (ch == '\\') {
+                i++; // skip the escaped character
+            } else if (inClass) {
+                if (ch == ']') {
+                    inClass = false;
+                }
+            } else if (ch == '[') {
+                inClass = true;
+            } else if ((ch == '(') || (ch == '{')) {
+                depth++;
+            } else if (((ch == ')') || (ch == '}')) && (depth > 0)) {
+                depth--;
+            } else if ((ch == '|') && (depth == 0)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.route;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A trie of uri pattern segments used to find the {@link PatternBinding}s that match a request uri.
+ * The bindings with the same {@link RoutePattern} are grouped, so a pattern is evaluated
+ * only once for all routes that share it.
+ * The literal segments are matched by string comparison and the <code>{name}</code> segments
+ * match any non empty segment, so the matching cost grows with the depth of the request uri
+ * and not with the number of routes.
+ * The regex of a binding is evaluated only if its uri pattern contains other regex constructs
+ * (for example <code>{id: [0-9]+}</code> or <code>.*</code>) and only for the request uris
+ * that reach the node where these constructs begin.
+ * <p/>
+ * A trie is immutable after construction so it can be shared by many threads without locking.
+ */
+class RouteTrie {
+
+    private final Node root = new Node();
+
+    /**
+     * @param bindings the bindings in routes order
+     */
+    public RouteTrie(Collection<PatternBinding> bindings) {
+        bindings.forEach(this::add);
+    }
+
+    /**
+     * Adds to groups all binding groups that match the request uri and to parameters their path parameters
+     * (on the same position). The bindings of a group are in routes order but the groups are not ordered.
+     *
+     * @param requestUri
+     * @param uriSegments the request uri split by '/' (see {@link #split(String)})
+     * @param groups
+     * @param parameters
+     */
+    public void find(String requestUri, String[] uriSegments, List<BindingGroup> groups, List<Map<String, String>> parameters) {
+        find(root, requestUri, uriSegments, 0, groups, parameters);
+    }
+
+    /**
+     * Split the uri by '/' keeping the empty segments (a trailing slash produces an empty segment).
+     */
+    public static String[] split(String uri) {
+        int count = 1;
+        for (int i = 0; i < uri.length(); i++) {
+            if (uri.charAt(i) == '/') {
+                count++;
+            }
+        }
+
+        String[] segments = new String[count];
+        int start = 0;
+        int index = 0;
+        for (int i = 0; i < uri.length(); i++) {
+            if (uri.charAt(i) == '/') {
+                segments[index++] = uri.substring(start, i);
+                start = i + 1;
+            }
+        }
+        segments[index] = uri.substring(start);
+
+        return segments;
+    }
+
+    private void add(PatternBinding binding) {
+        RoutePattern routePattern = binding.getRoutePattern();
+        Node node = root;
+        for (String segment : routePattern.getSegments()) {
+            node = node.getOrCreateChild(segment);
+        }
+
+        List<BindingGroup> groups = routePattern.isRegexRequired() ? node.regexGroups : node.groups;
+        for (BindingGroup group : groups) {
+            if (group.routePattern == routePattern) {
+                group.bindings.add(binding);
+                return;
+            }
+        }
+
+        BindingGroup group = new BindingGroup(routePattern);
+        group.bindings.add(binding);
+        groups.add(group);
+    }
+
+    private void find(Node node, String requestUri, String[] uriSegments, int index,
+                      List<BindingGroup> groups, List<Map<String, String>> parameters) {
+        match(node.regexGroups, requestUri, uriSegments, groups, parameters);
+
+        if (index == uriSegments.length) {
+            match(node.groups, requestUri, uriSegments, groups, parameters);
+            return;
+        }
+
+        String segment = uriSegments[index];
+        Node child = node.literalChildren.get(segment);
+        if (child != null) {
+            find(child, requestUri, uriSegments, index + 1, groups, parameters);
+        }
+
+        if ((node.parameterChild != null) && !segment.isEmpty()) {
+            find(node.parameterChild, requestUri, uriSegments, index + 1, groups, parameters);
+        }
+    }
+
+    private void match(List<BindingGroup> candidates, String requestUri, String[] uriSegments,
+                       List<BindingGroup> groups, List<Map<String, String>> parameters) {
+        for (int i = 0; i < candidates.size(); i++) {
+            BindingGroup group = candidates.get(i);
+            Map<String, String> groupParameters = group.routePattern.match(requestUri, uriSegments);
+            if (groupParameters != null) {
+                groups.add(group);
+                parameters.add(groupParameters);
+            }
+        }
+    }
+
+    /**
+     * The bindings (in routes order) that share a {@link RoutePattern}.
+     */
+    static class BindingGroup {
+
+        private final RoutePattern routePattern;
+        private final List<PatternBinding> bindings = new ArrayList<>();
+
+        private BindingGroup(RoutePattern routePattern) {
+            this.routePattern = routePattern;
+        }
+
+        public List<PatternBinding> getBindings() {
+            return bindings;
+        }
+
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> literalChildren = new HashMap<>();
+        private Node parameterChild;
+
+        // bindings that end in this node
+        private final List<BindingGroup> groups = new ArrayList<>();
+        // bindings that continue with regex from this node
+        private final List<BindingGroup> regexGroups = new ArrayList<>();
+
+        private Node getChild(String segment) {
+            return (segment == null) ? parameterChild : literalChildren.get(segment);
+        }
+
+        private Node getOrCreateChild(String segment) {
+            Node child = getChild(segment);
+            if (child == null) {
+                child = new Node();
+                if (segment == null) {
+                    parameterChild = child;
+                } else {
+                    literalChildren.put(segment, child);
+                }
+            }
+
+            return child;
+        }
+
+    }
+
+}
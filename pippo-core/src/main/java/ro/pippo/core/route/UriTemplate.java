@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.route;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An uri pattern parsed once in literal parts and parameter placeholders,
+ * used for reverse routing (see {@link Router#uriFor(String, java.util.Map)}).
+ * <p/>
+ * For "/user/{email}/{id: [0-9]+}" the literals are "/user/", "/" and ""
+ * and the parameter names are "email" and "id".
+ */
+class UriTemplate {
+
+    private final List<String> literals;
+    private final List<String> parameterNames;
+    private final List<String> placeholders;
+
+    /**
+     * @param literals the literal parts (one more than parameter names)
+     * @param parameterNames
+     * @param placeholders the parameter placeholders as they appear in the uri pattern
+     */
+    UriTemplate(List<String> literals, List<String> parameterNames, List<String> placeholders) {
+        this.literals = literals;
+        this.parameterNames = Collections.unmodifiableList(parameterNames);
+        this.placeholders = placeholders;
+    }
+
+    public int getParameterCount() {
+        return parameterNames.size();
+    }
+
+    /**
+     * Returns the literal part that precedes the parameter with the same index.
+     * The literal with index {@link #getParameterCount()} is the tail of the uri pattern.
+     */
+    public String getLiteral(int index) {
+        return literals.get(index);
+    }
+
+    public String getParameterName(int index) {
+        return parameterNames.get(index);
+    }
+
+    public List<String> getParameterNames() {
+        return parameterNames;
+    }
+
+    /**
+     * Returns the placeholder of the parameter (for example "{id: [0-9]+}").
+     */
+    public String getPlaceholder(int index) {
+        return placeholders.get(index);
+    }
+
+}
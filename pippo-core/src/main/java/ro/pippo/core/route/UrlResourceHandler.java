@@ -19,12 +19,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ro.pippo.core.HttpConstants;
 import ro.pippo.core.PippoRuntimeException;
+import ro.pippo.core.util.IoUtils;
 import ro.pippo.core.util.StringUtils;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Serves static resources.
@@ -35,14 +35,14 @@ public abstract class UrlResourceHandler extends ResourceHandler {
 
     private static final Logger log = LoggerFactory.getLogger(UrlResourceHandler.class);
 
-    private static final Pattern VERSION_PATTERN = Pattern.compile("-ver-[0-9a-f]+\\.");
+    private static final String VERSION_PREFIX = "-ver-";
 
     public UrlResourceHandler(String urlPath) {
         super(urlPath);
     }
 
     @Override
-    public final void handleResource(String resourcePath, RouteContext routeContext) {
+    public void handleResource(String resourcePath, RouteContext routeContext) {
         URL url = getResourceUrl(resourcePath);
         if (url != null) {
             streamResource(url, routeContext);
@@ -66,9 +66,31 @@ public abstract class UrlResourceHandler extends ResourceHandler {
         return version;
     }
 
+    /**
+     * Returns the version of the resource if it's known without opening a connection
+     * (for example from a manifest) or null.
+     */
+    protected String getKnownResourceVersion(String resourcePath) {
+        return null;
+    }
+
     @Override
     public String injectVersion(String resourcePath) {
-        String version = getResourceVersion(resourcePath);
+        return injectVersion(resourcePath, getResourceVersion(resourcePath));
+    }
+
+    /**
+     * Only a known version is checked (see {@link #getKnownResourceVersion(String)}); the last modified time
+     * costs a connection on each request, so a resource versioned by it is not marked as versioned.
+     */
+    @Override
+    protected boolean isCurrentVersion(String versionedResourcePath, String resourcePath) {
+        String version = getKnownResourceVersion(resourcePath);
+
+        return (version != null) && injectVersion(resourcePath, version).equals(versionedResourcePath);
+    }
+
+    private String injectVersion(String resourcePath, String version) {
         if (StringUtils.isNullOrEmpty(version)) {
             // unversioned, pass-through resource path
             return resourcePath;
@@ -81,10 +103,10 @@ public abstract class UrlResourceHandler extends ResourceHandler {
 
         if (extensionAt == -1) {
             versionedResourcePath.append(resourcePath);
-            versionedResourcePath.append("-ver-").append(version);
+            versionedResourcePath.append(VERSION_PREFIX).append(version);
         } else {
             versionedResourcePath.append(resourcePath.substring(0, extensionAt));
-            versionedResourcePath.append("-ver-").append(version);
+            versionedResourcePath.append(VERSION_PREFIX).append(version);
             versionedResourcePath.append(resourcePath.substring(extensionAt, resourcePath.length()));
         }
 
@@ -95,19 +117,30 @@ public abstract class UrlResourceHandler extends ResourceHandler {
 
     @Override
     public String removeVersion(String resourcePath) {
-        Matcher matcher = VERSION_PATTERN.matcher(resourcePath);
-        if (matcher.find()) {
-            int startIndex = matcher.start() - 1;
-            int endIndex = matcher.end() - 1;
-            String version = resourcePath.substring(startIndex + 1, endIndex);
-
-            String unversionedResourcePath = resourcePath.replace(version, "");
-            log.trace("Remove version from resource path: '{}' => '{}'", resourcePath, unversionedResourcePath);
+        // the version is injected before the extension, see injectVersion
+        int versionIndex = resourcePath.lastIndexOf(VERSION_PREFIX);
+        if (versionIndex == -1) {
+            return resourcePath;
+        }
 
-            return unversionedResourcePath;
+        int endIndex = versionIndex + VERSION_PREFIX.length();
+        while (endIndex < resourcePath.length() && isHexDigit(resourcePath.charAt(endIndex))) {
+            endIndex++;
+        }
+        if (endIndex == versionIndex + VERSION_PREFIX.length()
+            || (endIndex < resourcePath.length() && resourcePath.charAt(endIndex) != '.')) {
+            // not a version
+            return resourcePath;
         }
 
-        return resourcePath;
+        String unversionedResourcePath = resourcePath.substring(0, versionIndex) + resourcePath.substring(endIndex);
+        log.trace("Remove version from resource path: '{}' => '{}'", resourcePath, unversionedResourcePath);
+
+        return unversionedResourcePath;
+    }
+
+    private static boolean isHexDigit(char ch) {
+        return (ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'f');
     }
 
     protected void streamResource(URL resourceUrl, RouteContext routeContext) {
@@ -129,15 +162,25 @@ public abstract class UrlResourceHandler extends ResourceHandler {
     protected void sendResource(URL resourceUrl, RouteContext routeContext) throws IOException {
         String filename = resourceUrl.getFile();
         String mimeType = routeContext.getApplication().getMimeTypes().getContentType(filename);
+        // a real file is transferred without a heap copy when the container supports it (see FileTransfer)
+        File file = IoUtils.toFile(resourceUrl);
         if (!StringUtils.isNullOrEmpty(mimeType)) {
             // stream the resource
             log.debug("Streaming as resource '{}'", resourceUrl);
             routeContext.getResponse().contentType(mimeType);
-            routeContext.getResponse().ok().resource(resourceUrl.openStream());
+            if (file != null) {
+                routeContext.getResponse().ok().resource(file);
+            } else {
+                routeContext.getResponse().ok().resource(resourceUrl.openStream());
+            }
         } else {
             // stream the file
             log.debug("Streaming as file '{}'", resourceUrl);
-            routeContext.getResponse().ok().file(filename, resourceUrl.openStream());
+            if (file != null) {
+                routeContext.getResponse().ok().file(file);
+            } else {
+                routeContext.getResponse().ok().file(filename, resourceUrl.openStream());
+            }
         }
     }
 
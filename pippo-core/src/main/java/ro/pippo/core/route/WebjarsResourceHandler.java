@@ -59,6 +59,16 @@ public class WebjarsResourceHandler extends ClasspathResourceHandler {
 
     @Override
     public URL getResourceUrl(String resourcePath) {
+        URL url = super.getResourceUrl(resourcePath);
+        if (url == null) {
+            log.warn("Resource '{}' not found", getResourceName(resourcePath));
+        }
+
+        return url;
+    }
+
+    @Override
+    protected String getResourceName(String resourcePath) {
         String resourceName = getResourceBasePath() + "/" + resourcePath;
         String artifactPath = resourcePath.substring(0, resourcePath.indexOf('/') + 1);
         if (pathAliases.containsKey(artifactPath)) {
@@ -74,16 +84,19 @@ public class WebjarsResourceHandler extends ClasspathResourceHandler {
             }
         }
 
-        URL url = this.getClass().getClassLoader().getResource(resourceName);
-        if (url == null) {
-            log.warn("Resource '{}' not found", resourceName);
-        }
-
-        return url;
+        return resourceName;
     }
 
     @Override
     protected String getResourceVersion(String resourcePath) {
+        if (getManifest() != null) {
+            // the fingerprint of the content
+            String fingerprint = getManifest().getFingerprint(getResourceName(resourcePath));
+            if (fingerprint != null) {
+                return fingerprint;
+            }
+        }
+
         String artifactPath = resourcePath.substring(0, resourcePath.indexOf('/') + 1);
         if (pathAliases.containsKey(artifactPath)) {
             String artifactVersion = pathAliases.get(artifactPath);
@@ -99,6 +112,12 @@ public class WebjarsResourceHandler extends ClasspathResourceHandler {
         return null;
     }
 
+    @Override
+    protected String getKnownResourceVersion(String resourcePath) {
+        // the version of a webjar resource is computed without a connection
+        return getResourceVersion(resourcePath);
+    }
+
     /**
      * Scans the classpath for Webjars metadata and creates an alias registry of path aliases to fixed version paths
      * for all Webjars on the classpath.
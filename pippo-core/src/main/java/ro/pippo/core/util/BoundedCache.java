@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.util;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread safe cache with a maximum weight and lock free reads.
+ * By default the weight of an entry is 1, so the maximum weight is the maximum number of entries;
+ * use {@link #BoundedCache(long, ToLongFunction)} to bound the cache by the size of the values.
+ * When the maximum weight is exceeded the entries are evicted with the "second chance" (clock) algorithm,
+ * an approximation of LRU: the entries are visited in insertion order and an entry that was read
+ * since the last visit is kept (and visited again later).
+ * A maximum weight less or equal to zero disables the cache.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class BoundedCache<K, V> {
+
+    private final long maximumWeight;
+    private final ToLongFunction<? super V> weigher;
+    private final Map<K, Entry<V>> entries;
+    private final Queue<K> keys; // the eviction order
+    private final AtomicLong weight;
+
+    public BoundedCache(int maximumSize) {
+        this(maximumSize, value -> 1);
+    }
+
+    /**
+     * @param maximumWeight the maximum total weight of the values
+     * @param weigher returns the weight of a value; a value heavier than the maximum weight is not cached
+     */
+    public BoundedCache(long maximumWeight, ToLongFunction<? super V> weigher) {
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+
+        entries = new ConcurrentHashMap<>();
+        keys = new ConcurrentLinkedQueue<>();
+        weight = new AtomicLong();
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * Returns the value of the key or null.
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (!entry.used) {
+            // write only on the first read since the last visit of the eviction
+            entry.used = true;
+        }
+
+        return entry.value;
+    }
+
+    /**
+     * Returns the value of the key. The value is created (outside of any lock) with the function
+     * if it's not in the cache; a value created concurrently for the same key is discarded.
+     */
+    public V get(K key, Function<? super K, ? extends V> function) {
+        V value = get(key);
+        if (value == null) {
+            value = function.apply(key);
+            V existing = putIfAbsent(key, value);
+            if (existing != null) {
+                value = existing;
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Adds the value if the key is not in the cache.
+     *
+     * @return the existing value or null if the value was added (or not cacheable)
+     */
+    public V putIfAbsent(K key, V value) {
+        Entry<V> entry = createEntry(value);
+        if (entry == null) {
+            return null;
+        }
+
+        Entry<V> existing = entries.putIfAbsent(key, entry);
+        if (existing != null) {
+            return existing.value;
+        }
+
+        added(key, entry);
+
+        return null;
+    }
+
+    /**
+     * Adds or replaces the value of the key.
+     */
+    public void put(K key, V value) {
+        Entry<V> entry = createEntry(value);
+        if (entry == null) {
+            return;
+        }
+
+        Entry<V> previous = entries.put(key, entry);
+        if (previous != null) {
+            // the key is already in the eviction order
+            weight.addAndGet(entry.weight - previous.weight);
+            evict();
+        } else {
+            added(key, entry);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total weight of the cached values.
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public void clear() {
+        for (K key : entries.keySet()) {
+            remove(key);
+        }
+        keys.clear();
+    }
+
+    private Entry<V> createEntry(V value) {
+        if (maximumWeight <= 0) {
+            return null;
+        }
+
+        long valueWeight = weigher.applyAsLong(value);
+        if (valueWeight > maximumWeight) {
+            return null;
+        }
+
+        return new Entry<>(value, valueWeight);
+    }
+
+    private void added(K key, Entry<V> entry) {
+        weight.addAndGet(entry.weight);
+        keys.add(key);
+        evict();
+    }
+
+    private void remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        if (entry != null) {
+            weight.addAndGet(-entry.weight);
+        }
+    }
+
+    private void evict() {
+        while (weight.get() > maximumWeight) {
+            K key = keys.poll();
+            if (key == null) {
+                break;
+            }
+
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.used) {
+                // second chance
+                entry.used = false;
+                keys.add(key);
+            } else {
+                remove(key);
+            }
+        }
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long weight;
+        private volatile boolean used;
+
+        private Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A satisfiable byte range of a resource (see RFC 7233).
+ */
+public class ByteRange {
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    /**
+     * A request with more ranges is served entirely (a protection against the many small ranges attack).
+     */
+    public static final int MAX_RANGES = 16;
+
+    private final long start;
+    private final long end;
+
+    /**
+     * @param start the first byte position
+     * @param end the last byte position (inclusive)
+     */
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    /**
+     * Returns the value of the Content-Range header for this range.
+     */
+    public String getContentRange(long resourceLength) {
+        return "bytes " + start + "-" + end + "/" + resourceLength;
+    }
+
+    /**
+     * Parses the value of a Range header.
+     * The positions are limited to the resource length. The overlapping or adjacent ranges are coalesced
+     * (RFC 7233, section 6.1), so a byte is sent at most once, and the ranges are returned in ascending order.
+     *
+     * @param header the value of the Range header
+     * @param resourceLength
+     * @return null if the header is missing, is not a byte range, is not valid or it has too many ranges
+     * (the whole resource is sent), an empty list if no range is satisfiable (416) or the satisfiable ranges
+     */
+    public static List<ByteRange> parse(String header, long resourceLength) {
+        if (header == null || !header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+
+        String[] specs = header.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dashIndex = spec.indexOf('-');
+            if (dashIndex == -1) {
+                return null;
+            }
+
+            try {
+                if (dashIndex == 0) {
+                    // suffix range ("-500" are the last 500 bytes)
+                    long suffixLength = Long.parseLong(spec.substring(1));
+                    if (suffixLength < 0) {
+                        return null;
+                    }
+                    if (suffixLength > 0 && resourceLength > 0) {
+                        ranges.add(new ByteRange(Math.max(0, resourceLength - suffixLength), resourceLength - 1));
+                    }
+                } else {
+                    long first = Long.parseLong(spec.substring(0, dashIndex));
+                    String lastSpec = spec.substring(dashIndex + 1);
+                    long last = lastSpec.isEmpty() ? resourceLength - 1 : Long.parseLong(lastSpec);
+                    if (first < 0 || (!lastSpec.isEmpty() && last < first)) {
+                        return null;
+                    }
+                    if (first < resourceLength) {
+                        ranges.add(new ByteRange(first, Math.min(last, resourceLength - 1)));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        return coalesce(ranges);
+    }
+
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+
+        ranges.sort(Comparator.comparingLong(ByteRange::getStart));
+        List<ByteRange> coalescedRanges = new ArrayList<>(ranges.size());
+        ByteRange current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            if (range.start <= current.end + 1) {
+                // overlapping or adjacent
+                current = new ByteRange(current.start, Math.max(current.end, range.end));
+            } else {
+                coalescedRanges.add(current);
+                current = range;
+            }
+        }
+        coalescedRanges.add(current);
+
+        return coalescedRanges;
+    }
+
+    @Override
+    public String toString() {
+        return "ByteRange{" +
+            "start=" + start +
+            ", end=" + end +
+            '}';
+    }
+
+}
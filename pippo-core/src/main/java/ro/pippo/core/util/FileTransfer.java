@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transfers a file channel to a (servlet) output stream without copying the bytes through the heap
+ * when the servlet container supports it:
+ * <ul>
+ * <li>Undertow - <code>ServletOutputStreamImpl.transferFrom(FileChannel)</code> (sendfile)</li>
+ * <li>Jetty - <code>HttpOutput.sendContent(ReadableByteChannel)</code> (pooled direct buffers)</li>
+ * </ul>
+ * The container methods are found by reflection (once for each output stream class), so pippo-core
+ * doesn't depend on a container.
+ * <p/>
+ * For other containers (and for partial transfers) the channel is transferred with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)} to a channel over the output stream
+ * ({@link Channels#newChannel(OutputStream)}). That channel writes heap arrays, so this fallback is a plain
+ * buffered copy, not a zero copy transfer; it only saves the stream code.
+ * <p/>
+ * Tomcat supports sendfile with request attributes, see {@link ro.pippo.core.Response#file(java.io.File)}.
+ * <p/>
+ * A (direct) byte buffer is written with the <code>write(ByteBuffer)</code> method of the Undertow and Jetty
+ * output streams, so its content is not copied in a heap array first. For other containers a direct buffer
+ * is copied through a heap array.
+ */
+public class FileTransfer {
+
+    private static final Logger log = LoggerFactory.getLogger(FileTransfer.class);
+
+    private static final String UNDERTOW_METHOD = "transferFrom";
+    private static final String JETTY_METHOD = "sendContent";
+    private static final String BUFFER_METHOD = "write";
+
+    // output stream class -> container method (or empty)
+    private static final Map<Class<?>, Optional<Method>> methods = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Optional<Method>> bufferMethods = new ConcurrentHashMap<>();
+
+    private FileTransfer() {}
+
+    /**
+     * Transfers count bytes starting with position from the channel to the output stream.
+     *
+     * @return the number of bytes transferred
+     */
+    public static long transfer(FileChannel channel, long position, long count, OutputStream output) throws IOException {
+        if ((position == 0) && (count == channel.size())) {
+            Method method = methods.computeIfAbsent(output.getClass(), FileTransfer::findMethod).orElse(null);
+            if (method != null) {
+                invoke(method, output, channel);
+                return count;
+            }
+        }
+
+        // a copy through the heap, unless the output stream is a channel
+        WritableByteChannel target = (output instanceof WritableByteChannel) ? (WritableByteChannel) output : Channels.newChannel(output);
+        long transferred = 0;
+        while (transferred < count) {
+            long bytes = channel.transferTo(position + transferred, count - transferred, target);
+            if (bytes <= 0) {
+                // end of file (the file was truncated)
+                break;
+            }
+            transferred += bytes;
+        }
+
+        return transferred;
+    }
+
+    /**
+     * Transfers the remaining bytes of the buffer to the output stream.
+     * The position of the buffer is not changed.
+     *
+     * @return the number of bytes transferred
+     */
+    public static long transfer(ByteBuffer buffer, OutputStream output) throws IOException {
+        ByteBuffer source = buffer.duplicate();
+        int count = source.remaining();
+
+        Method method = bufferMethods.computeIfAbsent(output.getClass(), FileTransfer::findBufferMethod).orElse(null);
+        if (method != null) {
+            invoke(method, output, source);
+            return count;
+        }
+
+        if (source.hasArray()) {
+            output.write(source.array(), source.arrayOffset() + source.position(), count);
+            return count;
+        }
+
+        // a copy through the heap, unless the output stream is a channel
+        WritableByteChannel target = (output instanceof WritableByteChannel) ? (WritableByteChannel) output : Channels.newChannel(output);
+        while (source.hasRemaining()) {
+            target.write(source);
+        }
+
+        return count;
+    }
+
+    private static void invoke(Method method, OutputStream output, Object argument) throws IOException {
+        try {
+            method.invoke(output, argument);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static Optional<Method> findBufferMethod(Class<?> outputClass) {
+        Method method = getMethod(outputClass, BUFFER_METHOD, ByteBuffer.class);
+        if (method != null) {
+            log.debug("Transfer the buffers with '{}'", method);
+        }
+
+        return Optional.ofNullable(method);
+    }
+
+    private static Optional<Method> findMethod(Class<?> outputClass) {
+        Method method = getMethod(outputClass, UNDERTOW_METHOD, FileChannel.class);
+        if (method == null) {
+            method = getMethod(outputClass, JETTY_METHOD, ReadableByteChannel.class);
+        }
+
+        if (method != null) {
+            log.debug("Transfer the files with '{}'", method);
+        }
+
+        return Optional.ofNullable(method);
+    }
+
+    private static Method getMethod(Class<?> outputClass, String name, Class<?> parameterType) {
+        try {
+            Method method = outputClass.getMethod(name, parameterType);
+            method.setAccessible(true);
+
+            return method;
+        } catch (NoSuchMethodException | RuntimeException e) {
+            return null;
+        }
+    }
+
+}
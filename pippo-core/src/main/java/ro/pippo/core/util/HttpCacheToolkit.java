@@ -20,6 +20,8 @@ import org.slf4j.LoggerFactory;
 import ro.pippo.core.HttpConstants;
 import ro.pippo.core.PippoConstants;
 import ro.pippo.core.PippoSettings;
+import ro.pippo.core.Request;
+import ro.pippo.core.route.ResourceHandler;
 import ro.pippo.core.route.RouteContext;
 
 import java.text.ParseException;
@@ -32,6 +34,11 @@ public class HttpCacheToolkit {
 
     private static final Logger log = LoggerFactory.getLogger(HttpCacheToolkit.class);
 
+    /**
+     * The Cache-Control of a versioned resource (see {@link ResourceHandler#VERSIONED_ATTRIBUTE}).
+     */
+    public static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
     private final PippoSettings pippoSettings;
 
     public HttpCacheToolkit(PippoSettings pippoSettings) {
@@ -59,11 +66,57 @@ public class HttpCacheToolkit {
         return true;
     }
 
+    /**
+     * Returns true if the ranges of the Range header can be served: the request doesn't have an If-Range header
+     * or its validator (an entity tag or a date) matches the current representation.
+     * Otherwise the whole representation is sent (see RFC 7233, section 3.2).
+     *
+     * @param etag the current entity tag (can be null)
+     * @param lastModified
+     * @param routeContext
+     */
+    public boolean isRangeApplicable(String etag, long lastModified, RouteContext routeContext) {
+        String ifRange = routeContext.getHeader(HttpConstants.Header.IF_RANGE);
+        if (StringUtils.isNullOrEmpty(ifRange)) {
+            return true;
+        }
+
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // strong comparison, a weak entity tag never matches
+            return ifRange.equals(etag);
+        }
+
+        try {
+            // the http date has a resolution of one second
+            Date date = DateUtils.parseHttpDateFormat(ifRange);
+            return (lastModified > 0) && (date.getTime() / 1000 == lastModified / 1000);
+        } catch (ParseException e) {
+            log.debug("Can't parse HTTP date '{}'", ifRange);
+            return false;
+        }
+    }
+
     public void addEtag(RouteContext routeContext, long lastModified) {
+        addEtag(routeContext, lastModified, getEtag(lastModified), null);
+    }
+
+    /**
+     * Same as {@link #addEtag(RouteContext, long)} but with the entity tag and the value of
+     * the Last-Modified header already computed (for example by a cache of resources).
+     *
+     * @param routeContext
+     * @param lastModified
+     * @param etag the entity tag (see {@link #getEtag(long)})
+     * @param httpLastModified the formatted lastModified (see {@link DateUtils#formatForHttpHeader(long)}) or null
+     */
+    public void addEtag(RouteContext routeContext, long lastModified, String etag, String httpLastModified) {
         if (pippoSettings.isProd()) {
             String maxAge = pippoSettings.getString(PippoConstants.SETTING_HTTP_CACHE_CONTROL, "3600");
             if (maxAge.equals("0")) {
                 routeContext.setHeader(HttpConstants.Header.CACHE_CONTROL, "no-cache");
+            } else if (isVersionedResource(routeContext)) {
+                // the content of a versioned url never changes
+                routeContext.setHeader(HttpConstants.Header.CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL);
             } else {
                 routeContext.setHeader(HttpConstants.Header.CACHE_CONTROL, "max-age=" + maxAge);
             }
@@ -72,21 +125,44 @@ public class HttpCacheToolkit {
         }
 
         // Use etag on demand:
-        String etag = null;
-
         boolean useEtag = pippoSettings.getBoolean(PippoConstants.SETTING_HTTP_USE_ETAG, true);
         if (useEtag) {
-            // ETag right now is only lastModified long.
-            // maybe we change that in the future.
-            etag = "\"" + lastModified + "\"";
             routeContext.setHeader(HttpConstants.Header.ETAG, etag);
+        } else {
+            etag = null;
         }
 
         if (isModified(etag, lastModified, routeContext)) {
-            routeContext.setHeader(HttpConstants.Header.LAST_MODIFIED, DateUtils.formatForHttpHeader(lastModified));
+            if (httpLastModified == null) {
+                httpLastModified = DateUtils.formatForHttpHeader(lastModified);
+            }
+            routeContext.setHeader(HttpConstants.Header.LAST_MODIFIED, httpLastModified);
         } else if (routeContext.isRequestMethod(HttpConstants.Method.GET)) {
             routeContext.status(HttpConstants.StatusCode.NOT_MODIFIED);
         }
     }
 
+    private static boolean isVersionedResource(RouteContext routeContext) {
+        Request request = routeContext.getRequest();
+
+        return (request != null) && (request.getHttpServletRequest() != null)
+            && Boolean.TRUE.equals(request.getHttpServletRequest().getAttribute(ResourceHandler.VERSIONED_ATTRIBUTE));
+    }
+
+    /**
+     * Returns the entity tag for a resource.
+     * ETag right now is only lastModified long, maybe we change that in the future.
+     */
+    public static String getEtag(long lastModified) {
+        return "\"" + lastModified + "\"";
+    }
+
+    /**
+     * Returns the entity tag for an encoded variant (for example gzip) of a resource.
+     * The variants of a resource must have different entity tags.
+     */
+    public static String getEtag(long lastModified, String contentEncoding) {
+        return "\"" + lastModified + "-" + contentEncoding + "\"";
+    }
+
 }
@@ -16,6 +16,7 @@
 package ro.pippo.core.util;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -27,6 +28,9 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -54,9 +58,20 @@ public class IoUtils {
         return total;
     }
 
+    public static byte[] toByteArray(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        copy(input, output);
+
+        return output.toByteArray();
+    }
+
     public static String toString(InputStream input) throws IOException {
+        return toString(input, StandardCharsets.UTF_8);
+    }
+
+    public static String toString(InputStream input, Charset charset) throws IOException {
         StringWriter writer = new StringWriter();
-        copy(input, writer);
+        copy(input, writer, charset);
 
         return writer.toString();
     }
@@ -74,7 +89,11 @@ public class IoUtils {
     }
 
     public static long copy(InputStream input, Writer writer) throws IOException {
-        return copy(new InputStreamReader(input, StandardCharsets.UTF_8), writer);
+        return copy(input, writer, StandardCharsets.UTF_8);
+    }
+
+    public static long copy(InputStream input, Writer writer, Charset charset) throws IOException {
+        return copy(new InputStreamReader(input, charset), writer);
     }
 
     public static long copy(InputStream input, File file) throws IOException {
@@ -94,6 +113,23 @@ public class IoUtils {
             close(writer);
         }
     }
+
+    /**
+     * Returns the file of an url with the "file" protocol or null for other urls
+     * (for example a classpath resource from a jar).
+     */
+    public static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     /**
      * Silently closes a Closeable.
      *
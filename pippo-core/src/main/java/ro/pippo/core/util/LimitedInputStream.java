@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.util;
+
+import ro.pippo.core.HttpConstants;
+import ro.pippo.core.StatusCodeException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link InputStream} that fails with status 413 (request entity too large)
+ * when more than a maximum number of bytes are read from the underlying stream.
+ */
+public class LimitedInputStream extends FilterInputStream {
+
+    private final long maximumSize;
+    private long count;
+
+    public LimitedInputStream(InputStream input, long maximumSize) {
+        super(input);
+
+        this.maximumSize = maximumSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            checkLimit(1);
+        }
+
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            checkLimit(n);
+        }
+
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        checkLimit(skipped);
+
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void checkLimit(long n) {
+        count += n;
+        if (count > maximumSize) {
+            throw new StatusCodeException(HttpConstants.StatusCode.REQUEST_ENTITY_TOO_LARGE,
+                "Request body exceeds the maximum size of {} bytes", maximumSize);
+        }
+    }
+
+}
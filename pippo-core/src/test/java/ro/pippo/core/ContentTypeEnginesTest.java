@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ContentTypeEnginesTest {
+
+    private ContentTypeEngines engines;
+
+    @Before
+    public void before() {
+        engines = new ContentTypeEngines();
+        engines.registerContentTypeEngine(TextPlainEngine.class);
+    }
+
+    @Test
+    public void testGetAcceptTypes() {
+        assertEquals(Collections.emptyList(), ContentTypeEngines.getAcceptTypes(null));
+        assertEquals(Arrays.asList("application/json"), ContentTypeEngines.getAcceptTypes("application/json"));
+        assertEquals(Arrays.asList("application/json"), ContentTypeEngines.getAcceptTypes("application/json; charset=UTF-8"));
+        assertEquals(Arrays.asList("text/html", "application/xhtml+xml", "image/webp", "application/xml", "*/*"),
+            ContentTypeEngines.getAcceptTypes("text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8"));
+        assertEquals(Arrays.asList("application/json", "application/xml"),
+            ContentTypeEngines.getAcceptTypes("application/xml;q=0.9, application/json, text/plain;q=0"));
+    }
+
+    @Test
+    public void testGetContentTypeEngine() {
+        ContentTypeEngine engine = engines.getContentTypeEngine(HttpConstants.ContentType.TEXT_PLAIN);
+        assertTrue(engine instanceof TextPlainEngine);
+
+        // suffix
+        assertSame(engine, engines.getContentTypeEngine("plain"));
+        // q-values
+        assertSame(engine, engines.getContentTypeEngine("application/json;q=0.5, text/plain"));
+        assertNull(engines.getContentTypeEngine("application/json, text/plain;q=0"));
+        // cached results
+        assertSame(engine, engines.getContentTypeEngine("text/html, text/plain"));
+        assertSame(engine, engines.getContentTypeEngine("text/html, text/plain"));
+        assertFalse(engines.hasContentTypeEngine("application/json"));
+        assertFalse(engines.hasContentTypeEngine("application/json"));
+    }
+
+    @Test
+    public void testRegisterEngineAfterLookup() {
+        assertNull(engines.getContentTypeEngine("text/html"));
+
+        ContentTypeEngine engine = new TextPlainEngine() {
+
+            @Override
+            public String getContentType() {
+                return HttpConstants.ContentType.TEXT_HTML;
+            }
+
+        };
+        engines.setContentTypeEngine(engine);
+
+        assertSame(engine, engines.getContentTypeEngine("text/html"));
+    }
+
+}
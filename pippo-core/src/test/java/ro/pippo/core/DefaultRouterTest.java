@@ -579,6 +579,18 @@ public class DefaultRouterTest {
         assertThat(path, equalTo("/user/test@test.com?name=Decebal+Suiu"));
     }
 
+    @Test
+    public void testUriForNamedRoute() throws Exception {
+        router.addRoute(Route.GET("/contact/{id}", emptyRouteHandler).named("contact"));
+        router.addRoute(Route.GET("/contact/{id}/edit", emptyRouteHandler).named("editContact"));
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("id", "$3");
+        assertThat(router.uriFor("editContact", parameters), equalTo("/contact/$3/edit"));
+        assertThat(router.uriFor("/contact/{id}", parameters), equalTo("/contact/$3"));
+        assertNull(router.uriFor("unknown", parameters));
+    }
+
     @Test
     public void testExclusionFilter() throws Exception {
         Route route = Route.ALL("^(?!/(webjars|public)/).*", emptyRouteHandler);
@@ -701,6 +713,113 @@ public class DefaultRouterTest {
         assertEquals(1, matches.size());
     }
 
+    @Test
+    public void testRoutesOrderIsPreserved() throws Exception {
+        Route before = Route.ALL("/.*", emptyRouteHandler);
+        Route contact = Route.GET("/contact/{id}", emptyRouteHandler);
+        Route contactRegex = Route.GET("/contact/{id: [0-9]+}", emptyRouteHandler);
+        Route after = Route.ALL("/contact/.*", emptyRouteHandler);
+        router.addRoute(after);
+        router.addRoute(contact);
+        router.addRoute(before);
+        router.addRoute(contactRegex);
+
+        List<RouteMatch> matches = router.findRoutes(HttpConstants.Method.GET, "/contact/3");
+        assertEquals(4, matches.size());
+        assertSame(after, matches.get(0).getRoute());
+        assertSame(contact, matches.get(1).getRoute());
+        assertSame(before, matches.get(2).getRoute());
+        assertSame(contactRegex, matches.get(3).getRoute());
+        assertEquals("3", matches.get(1).getPathParameters().get("id"));
+        assertEquals("3", matches.get(3).getPathParameters().get("id"));
+    }
+
+    @Test
+    public void testLiteralSegmentsAreExact() throws Exception {
+        router.addRoute(Route.GET("/robots.txt", emptyRouteHandler));
+        router.addRoute(Route.GET("/contact/{id}/edit", emptyRouteHandler));
+
+        assertEquals(1, router.findRoutes(HttpConstants.Method.GET, "/robots.txt").size());
+        assertEquals(1, router.findRoutes(HttpConstants.Method.GET, "/contact/3/edit").size());
+        assertEquals(0, router.findRoutes(HttpConstants.Method.GET, "/contact/3/edit/").size());
+        assertEquals(0, router.findRoutes(HttpConstants.Method.GET, "/contact//edit").size());
+        assertEquals(0, router.findRoutes(HttpConstants.Method.GET, "/contact/3/delete").size());
+    }
+
+    @Test
+    public void testOptionalTrailingSlash() throws Exception {
+        router.addRoute(Route.GET("/contact/?", emptyRouteHandler));
+        router.addRoute(Route.GET("/users|/members", emptyRouteHandler));
+
+        assertEquals(1, router.findRoutes(HttpConstants.Method.GET, "/contact").size());
+        assertEquals(1, router.findRoutes(HttpConstants.Method.GET, "/contact/").size());
+        assertEquals(1, router.findRoutes(HttpConstants.Method.GET, "/users").size());
+        assertEquals(1, router.findRoutes(HttpConstants.Method.GET, "/members").size());
+    }
+
+    @Test
+    public void testRemoveRouteWithSameParameters() throws Exception {
+        Route route = Route.GET("/contact/{id}", emptyRouteHandler);
+        router.addRoute(route);
+        router.addRoute(Route.GET("/contact/{id: [0-9]+}", emptyRouteHandler));
+
+        assertEquals(2, router.findRoutes(HttpConstants.Method.GET, "/contact/3").size());
+
+        router.removeRoute(route);
+        assertEquals(1, router.findRoutes(HttpConstants.Method.GET, "/contact/3").size());
+        assertEquals(0, router.findRoutes(HttpConstants.Method.GET, "/contact/a").size());
+    }
+
+    @Test
+    public void testMatchCache() throws Exception {
+        router.setMatchCacheSize(2);
+        router.addRoute(Route.GET("/contact/{id}", emptyRouteHandler));
+
+        assertEquals("3", router.findRoutes(HttpConstants.Method.GET, "/contact/3").get(0).getPathParameters().get("id"));
+        assertEquals("3", router.findRoutes(HttpConstants.Method.GET, "/contact/3").get(0).getPathParameters().get("id"));
+        assertEquals(1, router.getMatchCacheHits());
+        assertEquals(1, router.getMatchCacheMisses());
+
+        // the cache is invalidated on route change
+        router.addRoute(Route.ALL("/contact/.*", emptyRouteHandler));
+        assertEquals(2, router.findRoutes(HttpConstants.Method.GET, "/contact/3").size());
+        assertEquals(1, router.getMatchCacheHits());
+        assertEquals(2, router.getMatchCacheMisses());
+
+        // the route context consumes the returned list
+        router.findRoutes(HttpConstants.Method.GET, "/contact/3").clear();
+        assertEquals(2, router.findRoutes(HttpConstants.Method.GET, "/contact/3").size());
+        assertEquals(3, router.getMatchCacheHits());
+    }
+
+    @Test
+    public void testRoutesWithSameUriPattern() throws Exception {
+        Route before = Route.ALL("/contact/{id: [0-9]+}", emptyRouteHandler);
+        Route contact = Route.GET("/contact/{id: [0-9]+}", emptyRouteHandler);
+        Route other = Route.GET("/contact/{name}", emptyRouteHandler);
+        Route after = Route.ALL("/contact/{id: [0-9]+}", emptyRouteHandler);
+        router.addRoute(before);
+        router.addRoute(other);
+        router.addRoute(contact);
+        router.addRoute(after);
+
+        List<RouteMatch> matches = router.findRoutes(HttpConstants.Method.GET, "/contact/3");
+        assertEquals(4, matches.size());
+        assertSame(before, matches.get(0).getRoute());
+        assertSame(other, matches.get(1).getRoute());
+        assertSame(contact, matches.get(2).getRoute());
+        assertSame(after, matches.get(3).getRoute());
+        assertEquals("3", matches.get(0).getPathParameters().get("id"));
+        assertEquals("3", matches.get(1).getPathParameters().get("name"));
+        assertEquals("3", matches.get(2).getPathParameters().get("id"));
+        assertEquals("3", matches.get(3).getPathParameters().get("id"));
+
+        matches = router.findRoutes(HttpConstants.Method.POST, "/contact/3");
+        assertEquals(2, matches.size());
+        assertSame(before, matches.get(0).getRoute());
+        assertSame(after, matches.get(1).getRoute());
+    }
+
     private class UserGroup extends RouteGroup {
 
         public UserGroup() {
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+
+/**
+ * Builds a {@link HttpServletRequest} stub (a dynamic proxy) for the tests.
+ * The stub answers the method, the path, the headers, the attributes and the body;
+ * the other methods return null (or the default value of a primitive).
+ */
+public class HttpServletRequestStub {
+
+    private String method = HttpConstants.Method.GET;
+    private String path = "/";
+    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, Object> attributes = new HashMap<>();
+    private byte[] body = new byte[0];
+    private long contentLength = -1;
+
+    public HttpServletRequestStub method(String method) {
+        this.method = method;
+
+        return this;
+    }
+
+    public HttpServletRequestStub path(String path) {
+        this.path = path;
+
+        return this;
+    }
+
+    public HttpServletRequestStub header(String name, String value) {
+        headers.put(name, value);
+
+        return this;
+    }
+
+    public HttpServletRequestStub headers(Map<String, String> headers) {
+        this.headers.putAll(headers);
+
+        return this;
+    }
+
+    /**
+     * Sets the body; the content length is unknown (a chunked body) unless it's set.
+     */
+    public HttpServletRequestStub body(String body) {
+        this.body = body.getBytes(StandardCharsets.UTF_8);
+
+        return this;
+    }
+
+    public HttpServletRequestStub contentLength(long contentLength) {
+        this.contentLength = contentLength;
+
+        return this;
+    }
+
+    /**
+     * Returns the attributes set on the request.
+     */
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    public HttpServletRequest create() {
+        ByteArrayInputStream bodyInput = new ByteArrayInputStream(body);
+        ServletInputStream input = new ServletInputStream() {
+
+            @Override
+            public int read() {
+                return bodyInput.read();
+            }
+
+        };
+
+        return newProxy(HttpServletRequest.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getMethod":
+                    return this.method;
+                case "getRequestURL":
+                    return new StringBuffer("http://localhost" + path);
+                case "getRequestURI":
+                case "getServletPath":
+                    return path;
+                case "getContextPath":
+                    return "";
+                case "getHeader":
+                    return headers.get(args[0]);
+                case "getContentType":
+                    return headers.get(HttpConstants.Header.CONTENT_TYPE);
+                case "getContentLength":
+                    return (int) contentLength;
+                case "getContentLengthLong":
+                    return contentLength;
+                case "getInputStream":
+                    return input;
+                case "getAttribute":
+                    return attributes.get(args[0]);
+                case "setAttribute":
+                    attributes.put((String) args[0], args[1]);
+                    return null;
+                case "removeAttribute":
+                    attributes.remove(args[0]);
+                    return null;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * Creates a dynamic proxy of an interface; a null returned by the handler for a primitive
+     * is replaced with the default value of the primitive.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T newProxy(Class<T> type, BiFunction<Method, Object[], Object> handler) {
+        return (T) Proxy.newProxyInstance(HttpServletRequestStub.class.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            Object value = handler.apply(method, args);
+            if (value == null && method.getReturnType().isPrimitive()) {
+                return getDefaultValue(method.getReturnType());
+            }
+
+            return value;
+        });
+    }
+
+    private static Object getDefaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core;
+
+import org.junit.Test;
+import ro.pippo.core.util.IoUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the maximum body size of {@link Request#getBodyAsStream()} and the entities created from the body
+ * (the servlet request is stubbed with a {@link HttpServletRequestStub}).
+ */
+public class RequestTest {
+
+    private static final String BODY = "0123456789";
+
+    @Test
+    public void testBodyWithinLimit() throws Exception {
+        Request request = newRequest(BODY.length(), BODY.length());
+
+        assertEquals(BODY, IoUtils.toString(request.getBodyAsStream()));
+    }
+
+    @Test
+    public void testContentLengthExceedsLimit() {
+        Request request = newRequest(5, BODY.length());
+        try {
+            // rejected before reading the body
+            request.getBodyAsStream();
+            fail("Expected a StatusCodeException");
+        } catch (StatusCodeException e) {
+            assertEquals(HttpConstants.StatusCode.REQUEST_ENTITY_TOO_LARGE, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void testChunkedBodyExceedsLimit() throws Exception {
+        // the content length is unknown, the limit is reached while reading
+        Request request = newRequest(5, -1);
+        InputStream input = request.getBodyAsStream();
+        try {
+            IoUtils.toString(input);
+            fail("Expected a StatusCodeException");
+        } catch (StatusCodeException e) {
+            assertEquals(HttpConstants.StatusCode.REQUEST_ENTITY_TOO_LARGE, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void testNoLimit() throws Exception {
+        Request request = newRequest(-1, BODY.length());
+        assertEquals(BODY, IoUtils.toString(request.getBodyAsStream()));
+
+        request = newRequest(-1, -1);
+        assertEquals(BODY, IoUtils.toString(request.getBodyAsStream()));
+    }
+
+    @Test
+    public void testEntityFromBody() {
+        // the text/plain engine reads the stream
+        Request request = newRequest(-1, BODY.length());
+        assertEquals(BODY, request.createEntityFromBody(String.class));
+
+        try {
+            // the stream was consumed
+            request.createEntityFromBody(String.class);
+            fail("Expected a PippoRuntimeException");
+        } catch (PippoRuntimeException e) {
+            assertFalse(e instanceof StatusCodeException);
+        }
+    }
+
+    @Test
+    public void testEntityFromBodyAfterGetBody() {
+        Request request = newRequest(-1, BODY.length());
+        assertEquals(BODY, request.getBody());
+
+        // the body string is reused
+        assertEquals(BODY, request.createEntityFromBody(String.class));
+        assertEquals(BODY, request.createEntityFromBody(String.class));
+    }
+
+    @Test
+    public void testEntityFromBodyExceedsLimit() {
+        Request request = newRequest(5, -1);
+        try {
+            request.createEntityFromBody(String.class);
+            fail("Expected a StatusCodeException");
+        } catch (StatusCodeException e) {
+            assertEquals(HttpConstants.StatusCode.REQUEST_ENTITY_TOO_LARGE, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void testEntityFromBodyExceedsLimitWrapped() {
+        // an engine that wraps the stream errors (like most of the json and xml engines)
+        Request request = newRequest(5, -1, WrappingEngine.CONTENT_TYPE);
+        try {
+            request.createEntityFromBody(String.class);
+            fail("Expected a StatusCodeException");
+        } catch (StatusCodeException e) {
+            assertEquals(HttpConstants.StatusCode.REQUEST_ENTITY_TOO_LARGE, e.getStatusCode());
+        }
+    }
+
+    private static Request newRequest(long maximumBodySize, int contentLength) {
+        return newRequest(maximumBodySize, contentLength, HttpConstants.ContentType.TEXT_PLAIN);
+    }
+
+    private static Request newRequest(long maximumBodySize, int contentLength, String contentType) {
+        Application application = new Application(new PippoSettings(RuntimeMode.TEST));
+        application.setMaximumBodySize(maximumBodySize);
+        application.registerContentTypeEngine(WrappingEngine.class);
+
+        HttpServletRequest httpServletRequest = new HttpServletRequestStub()
+            .method(HttpConstants.Method.POST)
+            .header(HttpConstants.Header.CONTENT_TYPE, contentType)
+            .body(BODY)
+            .contentLength(contentLength)
+            .create();
+
+        return new Request(httpServletRequest, application);
+    }
+
+    /**
+     * A text engine that wraps the errors of the stream.
+     */
+    public static class WrappingEngine extends TextPlainEngine {
+
+        static final String CONTENT_TYPE = "text/x-wrapping";
+
+        @Override
+        public String getContentType() {
+            return CONTENT_TYPE;
+        }
+
+        @Override
+        public <T> T fromStream(InputStream input, Charset charset, Class<T> classOfT) {
+            try {
+                return super.fromStream(input, charset, classOfT);
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Failed to read the stream", e);
+            }
+        }
+
+    }
+
+}
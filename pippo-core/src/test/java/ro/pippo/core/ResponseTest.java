@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ro.pippo.core.route.RouteDispatcher;
+import ro.pippo.core.util.DateUtils;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the range requests of {@link Response#resource(java.io.File)} and the buffering of {@link Response#send(Object)}
+ * (the servlet request is a {@link HttpServletRequestStub} and the response is stubbed with a dynamic proxy).
+ */
+public class ResponseTest {
+
+    private static final String ETAG = "\"pippo\"";
+
+    private Path file;
+    private String content;
+    private RouteDispatcher routeDispatcher;
+
+    @Before
+    public void before() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("0123456789");
+        }
+        content = sb.toString();
+
+        file = Files.createTempFile("pippo", ".txt");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+
+        Application application = new Application(new PippoSettings(RuntimeMode.TEST));
+        application.GET("/file", routeContext -> routeContext.getResponse()
+            .ok()
+            .contentType(HttpConstants.ContentType.TEXT_PLAIN)
+            .header(HttpConstants.Header.ETAG, ETAG)
+            .resource(file.toFile()));
+        application.GET("/send", routeContext -> {
+            int length = Integer.parseInt(routeContext.getRequest().getHeader("X-Length"));
+            routeContext.getResponse()
+                .contentType(HttpConstants.ContentType.TEXT_PLAIN)
+                .send((Object) repeat(length)); // serialized by the content type engine
+        });
+
+        routeDispatcher = new RouteDispatcher(application);
+        routeDispatcher.init();
+    }
+
+    @After
+    public void after() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testWholeFile() throws Exception {
+        ResponseStub response = dispatch(new HashMap<>());
+
+        assertEquals(HttpConstants.StatusCode.OK, response.status);
+        assertEquals("bytes", response.headers.get(HttpConstants.Header.ACCEPT_RANGES));
+        assertEquals(1000, response.contentLength);
+        assertEquals(content, response.getBody());
+    }
+
+    @Test
+    public void testSingleRange() throws Exception {
+        ResponseStub response = dispatch(range("bytes=10-19"));
+
+        assertEquals(HttpConstants.StatusCode.PARTIAL_CONTENT, response.status);
+        assertEquals("bytes 10-19/1000", response.headers.get(HttpConstants.Header.CONTENT_RANGE));
+        assertEquals(10, response.contentLength);
+        assertEquals(content.substring(10, 20), response.getBody());
+    }
+
+    @Test
+    public void testRangeNotSatisfiable() throws Exception {
+        ResponseStub response = dispatch(range("bytes=2000-"));
+
+        assertEquals(HttpConstants.StatusCode.REQUESTED_RANGE_NOT_SATISFIABLE, response.status);
+        assertEquals("bytes */1000", response.headers.get(HttpConstants.Header.CONTENT_RANGE));
+        assertEquals(0, response.contentLength);
+        // the empty response is committed, it's not handled as an error
+        assertTrue(response.committed);
+        assertEquals("", response.getBody());
+    }
+
+    @Test
+    public void testMultipleRanges() throws Exception {
+        ResponseStub response = dispatch(range("bytes=0-9,20-29"));
+
+        assertEquals(HttpConstants.StatusCode.PARTIAL_CONTENT, response.status);
+        assertNull(response.headers.get(HttpConstants.Header.CONTENT_RANGE));
+
+        String contentType = response.contentType;
+        String prefix = HttpConstants.ContentType.MULTIPART_BYTERANGES + "; boundary=";
+        assertTrue(contentType.startsWith(prefix));
+        String boundary = contentType.substring(prefix.length());
+
+        String expected = "\r\n--" + boundary + "\r\n"
+            + "Content-Type: text/plain\r\n"
+            + "Content-Range: bytes 0-9/1000\r\n\r\n"
+            + content.substring(0, 10)
+            + "\r\n--" + boundary + "\r\n"
+            + "Content-Type: text/plain\r\n"
+            + "Content-Range: bytes 20-29/1000\r\n\r\n"
+            + content.substring(20, 30)
+            + "\r\n--" + boundary + "--\r\n";
+        assertEquals(expected, response.getBody());
+        assertEquals(expected.length(), response.contentLength);
+    }
+
+    @Test
+    public void testOverlappingRanges() throws Exception {
+        StringBuilder range = new StringBuilder("bytes=0-");
+        for (int i = 1; i < 16; i++) {
+            range.append(",0-");
+        }
+        ResponseStub response = dispatch(range(range.toString()));
+
+        // the ranges are coalesced, the file is sent once
+        assertEquals(HttpConstants.StatusCode.PARTIAL_CONTENT, response.status);
+        assertEquals("bytes 0-999/1000", response.headers.get(HttpConstants.Header.CONTENT_RANGE));
+        assertEquals(content, response.getBody());
+    }
+
+    @Test
+    public void testIfRangeEtag() throws Exception {
+        Map<String, String> headers = range("bytes=10-19");
+        headers.put(HttpConstants.Header.IF_RANGE, ETAG);
+        ResponseStub response = dispatch(headers);
+
+        assertEquals(HttpConstants.StatusCode.PARTIAL_CONTENT, response.status);
+        assertEquals(content.substring(10, 20), response.getBody());
+
+        // the representation was changed, the whole file is sent
+        headers.put(HttpConstants.Header.IF_RANGE, "\"changed\"");
+        response = dispatch(headers);
+
+        assertEquals(HttpConstants.StatusCode.OK, response.status);
+        assertFalse(response.headers.containsKey(HttpConstants.Header.CONTENT_RANGE));
+        assertEquals(content, response.getBody());
+    }
+
+    @Test
+    public void testIfRangeDate() throws Exception {
+        long lastModified = file.toFile().lastModified();
+
+        Map<String, String> headers = range("bytes=10-19");
+        headers.put(HttpConstants.Header.IF_RANGE, DateUtils.formatForHttpHeader(lastModified));
+        ResponseStub response = dispatch(headers);
+
+        assertEquals(HttpConstants.StatusCode.PARTIAL_CONTENT, response.status);
+        assertEquals(content.substring(10, 20), response.getBody());
+
+        // the file was modified after the date, the whole file is sent
+        headers.put(HttpConstants.Header.IF_RANGE, DateUtils.formatForHttpHeader(lastModified - 60 * 1000));
+        response = dispatch(headers);
+
+        assertEquals(HttpConstants.StatusCode.OK, response.status);
+        assertEquals(content, response.getBody());
+    }
+
+    @Test
+    public void testSendSmall() throws Exception {
+        ResponseStub response = dispatch("/send", length(10));
+
+        assertEquals(10, response.contentLength);
+        assertEquals(repeat(10), response.getBody());
+    }
+
+    @Test
+    public void testSendGrowsBuffer() throws Exception {
+        // bigger than the initial buffer, still buffered so the length is known
+        ResponseStub response = dispatch("/send", length(5000));
+
+        assertEquals(5000, response.contentLength);
+        assertEquals(repeat(5000), response.getBody());
+    }
+
+    @Test
+    public void testSendStreams() throws Exception {
+        // bigger than the response buffer, streamed
+        ResponseStub response = dispatch("/send", length(20000));
+
+        assertEquals(-1, response.contentLength);
+        assertEquals(repeat(20000), response.getBody());
+    }
+
+    private static String repeat(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+
+        return sb.toString();
+    }
+
+    private static Map<String, String> length(int length) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-Length", String.valueOf(length));
+
+        return headers;
+    }
+
+    private static Map<String, String> range(String range) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(HttpConstants.Header.RANGE, range);
+
+        return headers;
+    }
+
+    private ResponseStub dispatch(Map<String, String> headers) throws Exception {
+        return dispatch("/file", headers);
+    }
+
+    private ResponseStub dispatch(String path, Map<String, String> headers) throws Exception {
+        Application application = routeDispatcher.getApplication();
+        ResponseStub response = new ResponseStub();
+        routeDispatcher.dispatch(new Request(new HttpServletRequestStub().path(path).headers(headers).create(), application), new Response(response.proxy, application));
+
+        return response;
+    }
+
+    /**
+     * Records what is sent to a {@link HttpServletResponse}; like a container, the response
+     * is committed when the buffer is flushed or when the content doesn't fit in the buffer.
+     */
+    private static class ResponseStub {
+
+        private static final int BUFFER_SIZE = 8192;
+
+        final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final HttpServletResponse proxy;
+
+        int status = HttpConstants.StatusCode.OK;
+        long contentLength = -1;
+        String contentType;
+        String characterEncoding;
+        boolean committed;
+
+        ResponseStub() {
+            ServletOutputStream output = new ServletOutputStream() {
+
+                @Override
+                public void write(int b) {
+                    body.write(b);
+                    if (body.size() > BUFFER_SIZE) {
+                        committed = true;
+                    }
+                }
+
+            };
+
+            proxy = HttpServletRequestStub.newProxy(HttpServletResponse.class, (method, args) -> {
+                switch (method.getName()) {
+                    case "setStatus":
+                        status = (Integer) args[0];
+                        return null;
+                    case "getStatus":
+                        return status;
+                    case "setHeader":
+                    case "addHeader":
+                        headers.put((String) args[0], (String) args[1]);
+                        return null;
+                    case "getHeader":
+                        return headers.get(args[0]);
+                    case "containsHeader":
+                        return headers.containsKey(args[0]);
+                    case "setContentLength":
+                        contentLength = (Integer) args[0];
+                        return null;
+                    case "setContentLengthLong":
+                        contentLength = (Long) args[0];
+                        return null;
+                    case "setContentType":
+                        contentType = (String) args[0];
+                        return null;
+                    case "getContentType":
+                        return contentType;
+                    case "setCharacterEncoding":
+                        characterEncoding = (String) args[0];
+                        return null;
+                    case "getCharacterEncoding":
+                        return characterEncoding;
+                    case "getOutputStream":
+                        return output;
+                    case "getWriter":
+                        return new PrintWriter(output);
+                    case "getBufferSize":
+                        return BUFFER_SIZE;
+                    case "flushBuffer":
+                        committed = true;
+                        return null;
+                    case "isCommitted":
+                        return committed;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        String getBody() {
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+    }
+
+}
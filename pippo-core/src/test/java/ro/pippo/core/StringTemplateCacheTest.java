@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class StringTemplateCacheTest {
+
+    private int compilations;
+    private Function<String, StringBuilder> compiler;
+
+    @Before
+    public void before() {
+        compilations = 0;
+        compiler = content -> {
+            compilations++;
+            return new StringBuilder(content);
+        };
+    }
+
+    @Test
+    public void testHit() {
+        StringTemplateCache<StringBuilder> cache = new StringTemplateCache<>(10);
+
+        StringBuilder template = cache.get("Hello ${name}", compiler);
+        assertSame(template, cache.get("Hello ${name}", compiler));
+        assertEquals(1, compilations);
+        assertEquals(1, cache.size());
+
+        cache.get("Bye ${name}", compiler);
+        assertEquals(2, compilations);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testEviction() {
+        PippoSettings pippoSettings = new PippoSettings(RuntimeMode.TEST);
+        pippoSettings.overrideSetting(PippoConstants.SETTING_TEMPLATE_STRING_CACHE_SIZE, 2);
+        StringTemplateCache<StringBuilder> cache = new StringTemplateCache<>(pippoSettings);
+
+        StringBuilder a = cache.get("a", compiler);
+        cache.get("b", compiler);
+        // "a" is used, "b" becomes the least recently used
+        assertSame(a, cache.get("a", compiler));
+        cache.get("c", compiler);
+        assertEquals(3, compilations);
+        assertEquals(2, cache.size());
+
+        // "a" is still cached, "b" was evicted
+        assertSame(a, cache.get("a", compiler));
+        assertEquals(3, compilations);
+        cache.get("b", compiler);
+        assertEquals(4, compilations);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testDisabled() {
+        StringTemplateCache<StringBuilder> cache = new StringTemplateCache<>(0);
+
+        cache.get("Hello ${name}", compiler);
+        cache.get("Hello ${name}", compiler);
+        assertEquals(2, compilations);
+        assertEquals(0, cache.size());
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TemplatePrecompilerTest {
+
+    private Path root;
+    private ClassLoader contextClassLoader;
+    private PippoSettings pippoSettings;
+
+    @Before
+    public void before() throws IOException {
+        root = Files.createTempDirectory("pippo");
+        Path templates = Files.createDirectories(root.resolve("views/layouts"));
+        Files.write(templates.getParent().resolve("index.test"), Collections.singletonList("index"));
+        Files.write(templates.getParent().resolve("broken.test"), Collections.singletonList("broken"));
+        Files.write(templates.getParent().resolve("readme.txt"), Collections.singletonList("readme"));
+        Files.write(templates.resolve("base.test"), Collections.singletonList("base"));
+
+        contextClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[] { root.toUri().toURL() }, null));
+
+        pippoSettings = new PippoSettings(RuntimeMode.TEST);
+        pippoSettings.overrideSetting(PippoConstants.SETTING_TEMPLATE_PATH_PREFIX, "/views");
+    }
+
+    @After
+    public void after() throws IOException {
+        Thread.currentThread().setContextClassLoader(contextClassLoader);
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testGetTemplateNames() {
+        TemplatePrecompiler precompiler = new TemplatePrecompiler(new TestTemplateEngine(), pippoSettings);
+        assertEquals(Arrays.asList("broken.test", "index.test", "layouts/base.test"), precompiler.getTemplateNames());
+    }
+
+    @Test
+    public void testGetTemplateNamesFromIndex() throws IOException {
+        TemplatePrecompiler.main(new String[] { root.resolve("views").toString() });
+        List<String> index = Files.readAllLines(root.resolve("views").resolve(TemplatePrecompiler.INDEX_NAME));
+        assertEquals(Arrays.asList("broken.test", "index.test", "layouts/base.test", "readme.txt"), index);
+
+        // the index is used instead of scanning
+        Files.delete(root.resolve("views/index.test"));
+        TemplatePrecompiler precompiler = new TemplatePrecompiler(new TestTemplateEngine(), pippoSettings);
+        assertEquals(Arrays.asList("broken.test", "index.test", "layouts/base.test"), precompiler.getTemplateNames());
+    }
+
+    @Test
+    public void testPrecompile() {
+        TestTemplateEngine engine = new TestTemplateEngine();
+        TemplatePrecompiler precompiler = new TemplatePrecompiler(engine, pippoSettings);
+        try {
+            precompiler.precompile();
+            fail("The broken template must be reported");
+        } catch (PippoRuntimeException e) {
+            assertTrue(e.getMessage().contains("broken.test"));
+        }
+
+        // all templates are compiled, not only the ones before the failure
+        assertEquals(3, engine.compiled.size());
+    }
+
+    @Test
+    public void testPrecompileWithoutFileExtension() {
+        TemplateEngine engine = new TestTemplateEngine() {
+
+            @Override
+            public String getFileExtension() {
+                return null;
+            }
+
+        };
+
+        assertEquals(0, new TemplatePrecompiler(engine, pippoSettings).precompile());
+    }
+
+    private static class TestTemplateEngine implements TemplateEngine {
+
+        private final Set<String> compiled = new ConcurrentSkipListSet<>();
+
+        @Override
+        public void init(Application application) {
+        }
+
+        @Override
+        public void renderString(String templateContent, Map<String, Object> model, Writer writer) {
+        }
+
+        @Override
+        public void renderResource(String templateName, Map<String, Object> model, Writer writer) {
+        }
+
+        @Override
+        public String getFileExtension() {
+            return "test";
+        }
+
+        @Override
+        public void compile(String templateName) {
+            compiled.add(templateName);
+            // the templates are loaded with the context class loader
+            URL url = Thread.currentThread().getContextClassLoader().getResource("views/" + templateName);
+            try {
+                if (new String(Files.readAllBytes(Paths.get(url.toURI())), StandardCharsets.UTF_8).startsWith("broken")) {
+                    throw new PippoRuntimeException("Syntax error");
+                }
+            } catch (IOException | URISyntaxException e) {
+                throw new PippoRuntimeException(e);
+            }
+        }
+
+    }
+
+}
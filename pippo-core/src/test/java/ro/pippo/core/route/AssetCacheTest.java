@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.route;
+
+import org.junit.Test;
+import ro.pippo.core.util.IoUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AssetCacheTest {
+
+    @Test
+    public void testLoad() throws IOException {
+        Path file = Files.createTempFile("pippo", ".css");
+        try {
+            Files.write(file, "body {}".getBytes(StandardCharsets.UTF_8));
+
+            AssetCache assetCache = new AssetCache();
+            AssetCache.Asset asset = assetCache.load("css/main.css", file.toUri().toURL(), "text/css");
+            assertNotNull(asset);
+            assertTrue(asset.getContent().isDirect());
+            assertEquals(7, asset.getLength());
+            assertEquals("text/css", asset.getContentType());
+            assertEquals(file.getFileName().toString(), asset.getFilename());
+            assertEquals("\"" + file.toFile().lastModified() + "\"", asset.getEtag());
+            assertSame(asset, assetCache.get("css/main.css"));
+            assertEquals(7, assetCache.getWeight());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCompressed() throws IOException {
+        Path file = Files.createTempFile("pippo", ".js");
+        try {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                content.append("console.log('pippo');\n");
+            }
+            Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+            AssetCache assetCache = new AssetCache();
+            AssetCache.Asset asset = assetCache.load("main.js", file.toUri().toURL(), "application/javascript");
+            AssetCache.Asset gzipAsset = asset.getEncodedAsset(AssetCache.GZIP);
+            assertNotNull(gzipAsset);
+            assertEquals(AssetCache.GZIP, gzipAsset.getContentEncoding());
+            assertEquals("\"" + asset.getLastModified() + "-gzip\"", gzipAsset.getEtag());
+            assertEquals(asset.getLength() + gzipAsset.getLength(), assetCache.getWeight());
+
+            // decompress
+            byte[] bytes = new byte[gzipAsset.getLength()];
+            gzipAsset.getContent().duplicate().get(bytes);
+            try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                assertEquals(content.toString(), new String(IoUtils.toByteArray(input), StandardCharsets.UTF_8));
+            }
+
+            // not compressible
+            asset = assetCache.load("main.png", file.toUri().toURL(), "image/png");
+            assertNull(asset.getEncodedAsset(AssetCache.GZIP));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testPrecompressed() throws IOException {
+        Path file = Files.createTempFile("pippo", ".css");
+        Path brotliFile = Paths.get(file + ".br");
+        try {
+            Files.write(file, "body {}".getBytes(StandardCharsets.UTF_8));
+            Files.write(brotliFile, new byte[] { 1, 2, 3 });
+
+            AssetCache assetCache = new AssetCache();
+            AssetCache.Asset asset = assetCache.load("main.css", file.toUri().toURL(), "text/css",
+                Collections.singletonMap(AssetCache.BROTLI, brotliFile.toUri().toURL()));
+            assertTrue(asset.hasEncodedAssets());
+            assertEquals(3, asset.getEncodedAsset(AssetCache.BROTLI).getLength());
+            assertEquals("text/css", asset.getEncodedAsset(AssetCache.BROTLI).getContentType());
+            // too small to be compressed
+            assertNull(asset.getEncodedAsset(AssetCache.GZIP));
+        } finally {
+            Files.delete(file);
+            Files.delete(brotliFile);
+        }
+    }
+
+    @Test
+    public void testTooBig() throws IOException {
+        Path file = Files.createTempFile("pippo", ".js");
+        try {
+            Files.write(file, new byte[11]);
+
+            AssetCache assetCache = new AssetCache(100, 10);
+            assertNull(assetCache.load("main.js", file.toUri().toURL(), null));
+            assertEquals(0, assetCache.size());
+
+            // remembered, with the resolved url
+            AssetCache.UncachedAsset uncachedAsset = assetCache.getUncached("main.js");
+            assertNotNull(uncachedAsset);
+            assertEquals(file.toUri().toURL(), uncachedAsset.getUrl());
+            assertTrue(uncachedAsset.getEncodedUrls().isEmpty());
+
+            assetCache.clear();
+            assertNull(assetCache.getUncached("main.js"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEviction() {
+        AssetCache assetCache = new AssetCache(10, 10);
+        assetCache.put("a", createAsset(4));
+        assetCache.put("b", createAsset(4));
+        // "a" is the most recently used asset
+        assetCache.get("a");
+        assetCache.put("c", createAsset(4));
+
+        assertEquals(2, assetCache.size());
+        assertEquals(8, assetCache.getWeight());
+        assertNotNull(assetCache.get("a"));
+        assertNull(assetCache.get("b"));
+        assertNotNull(assetCache.get("c"));
+
+        // replace an asset
+        assetCache.put("c", createAsset(2));
+        assertEquals(6, assetCache.getWeight());
+    }
+
+    private static AssetCache.Asset createAsset(int length) {
+        return new AssetCache.Asset(ByteBuffer.allocateDirect(length).asReadOnlyBuffer(), 0, null, "test");
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.route;
+
+import org.junit.Test;
+import ro.pippo.core.Application;
+import ro.pippo.core.HttpServletRequestStub;
+import ro.pippo.core.ParameterValue;
+import ro.pippo.core.PippoSettings;
+import ro.pippo.core.Request;
+import ro.pippo.core.RuntimeMode;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ClasspathResourceHandlerTest {
+
+    @Test
+    public void testVersionFromManifest() {
+        ClasspathResourceHandler handler = new ClasspathResourceHandler("/public", "public");
+        handler.useManifest(new ResourceManifest(Collections.singletonMap("public/css/main.css", "40294f6c20ee96ec")));
+
+        String versionedPath = handler.injectVersion("css/main.css");
+        assertEquals("css/main-ver-40294f6c20ee96ec.css", versionedPath);
+        assertEquals("css/main.css", handler.removeVersion(versionedPath));
+
+        // not in the manifest
+        assertEquals("css/missing.css", handler.injectVersion("css/missing.css"));
+    }
+
+    @Test
+    public void testVersionNotInManifest() throws IOException {
+        Path file = Files.createTempFile("pippo", ".css");
+        try {
+            ClasspathResourceHandler handler = new TestResourceHandler(file);
+            handler.useManifest(new ResourceManifest(Collections.singletonMap("public/css/main.css", "40294f6c20ee96ec")));
+
+            // the last modified time
+            assertEquals("css/other-ver-" + file.toFile().lastModified() + ".css", handler.injectVersion("css/other.css"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testVersionedAttribute() throws IOException {
+        Path file = Files.createTempFile("pippo", ".css");
+        try {
+            TestResourceHandler handler = new TestResourceHandler(file);
+            handler.useManifest(new ResourceManifest(Collections.singletonMap("public/css/other.css", "40294f6c20ee96ec")));
+
+            assertEquals(Boolean.TRUE, handle(handler, "css/other-ver-40294f6c20ee96ec.css"));
+            assertEquals("css/other.css", handler.resourcePath);
+
+            // a stale version is served, but it's not immutable
+            assertNull(handle(handler, "css/other-ver-1453812345000.css"));
+            assertEquals("css/other.css", handler.resourcePath);
+
+            assertNull(handle(handler, "css/other.css"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testVersionedAttributeWithoutManifest() throws IOException {
+        Path file = Files.createTempFile("pippo", ".css");
+        try {
+            TestResourceHandler handler = new TestResourceHandler(file);
+            String versionedPath = handler.injectVersion("css/other.css");
+            handler.resourceUrlLookups = 0;
+
+            // the last modified time is not read on each request, the resource is served but it's not immutable
+            assertNull(handle(handler, versionedPath));
+            assertEquals("css/other.css", handler.resourcePath);
+            assertEquals(0, handler.resourceUrlLookups);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRemoveVersion() {
+        ClasspathResourceHandler handler = new ClasspathResourceHandler("/public", "public");
+        assertEquals("js/app.min.js", handler.removeVersion("js/app-ver-1453812345000.min.js"));
+        assertEquals("LICENSE", handler.removeVersion("LICENSE-ver-abc123"));
+        assertEquals("js/app.js", handler.removeVersion("js/app.js"));
+        assertEquals("js/data-ver-data.js", handler.removeVersion("js/data-ver-data.js"));
+        assertEquals("js/app-ver-.js", handler.removeVersion("js/app-ver-.js"));
+    }
+
+    @Test
+    public void testAcceptEncoding() {
+        assertTrue(ClasspathResourceHandler.isAccepted("gzip, deflate, br", "br"));
+        assertTrue(ClasspathResourceHandler.isAccepted("gzip, deflate, br", "gzip"));
+        assertTrue(ClasspathResourceHandler.isAccepted("GZIP;q=0.5", "gzip"));
+        assertTrue(ClasspathResourceHandler.isAccepted("*", "br"));
+
+        assertFalse(ClasspathResourceHandler.isAccepted(null, "gzip"));
+        assertFalse(ClasspathResourceHandler.isAccepted("deflate", "gzip"));
+        assertFalse(ClasspathResourceHandler.isAccepted("gzip;q=0", "gzip"));
+        assertFalse(ClasspathResourceHandler.isAccepted("*, br;q=0", "br"));
+        assertFalse(ClasspathResourceHandler.isAccepted("*;q=0", "gzip"));
+    }
+
+    /**
+     * Handles the resource path and returns the versioned attribute of the request.
+     */
+    private static Object handle(ResourceHandler handler, String resourcePath) {
+        HttpServletRequestStub httpServletRequest = new HttpServletRequestStub();
+        Request request = new Request(httpServletRequest.create(), new Application(new PippoSettings(RuntimeMode.TEST)));
+
+        RouteContext routeContext = HttpServletRequestStub.newProxy(RouteContext.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getParameter":
+                    return new ParameterValue(resourcePath);
+                case "getRequest":
+                    return request;
+                default:
+                    return null;
+            }
+        });
+        handler.handle(routeContext);
+
+        return httpServletRequest.getAttributes().get(ResourceHandler.VERSIONED_ATTRIBUTE);
+    }
+
+    /**
+     * Serves "css/other.css" from a file and records the handled resource path.
+     */
+    private static class TestResourceHandler extends ClasspathResourceHandler {
+
+        private final Path file;
+
+        private String resourcePath;
+        private int resourceUrlLookups;
+
+        TestResourceHandler(Path file) {
+            super("/public", "public");
+
+            this.file = file;
+        }
+
+        @Override
+        public URL getResourceUrl(String resourcePath) {
+            resourceUrlLookups++;
+            if (!"css/other.css".equals(resourcePath)) {
+                return null;
+            }
+
+            try {
+                return file.toUri().toURL();
+            } catch (MalformedURLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void handleResource(String resourcePath, RouteContext routeContext) {
+            this.resourcePath = resourcePath;
+        }
+
+    }
+
+}
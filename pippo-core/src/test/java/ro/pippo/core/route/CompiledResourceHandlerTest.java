@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.route;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CompiledResourceHandlerTest {
+
+    private Path root;
+    private URL mainUrl;
+    private Path imported;
+
+    @Before
+    public void before() throws IOException {
+        root = Files.createTempDirectory("pippo");
+        imported = root.resolve("imported.css");
+        Files.write(imported, Collections.singletonList("b"));
+        Path main = root.resolve("main.css");
+        Files.write(main, Collections.singletonList("a\n@import imported.css"));
+        mainUrl = main.toUri().toURL();
+    }
+
+    @After
+    public void after() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        CountDownLatch compiling = new CountDownLatch(1);
+        TestResourceHandler handler = new TestResourceHandler(compiling);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<CompiledResourceHandler.CompiledResource>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> handler.getCompiledResource(mainUrl, true)));
+            }
+            // let the first compilation finish after all requests were submitted
+            Thread.sleep(100);
+            compiling.countDown();
+
+            CompiledResourceHandler.CompiledResource compiledResource = futures.get(0).get();
+            for (Future<CompiledResourceHandler.CompiledResource> future : futures) {
+                assertSame(compiledResource, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, handler.compilations.get());
+    }
+
+    @Test
+    public void testImportModified() throws Exception {
+        TestResourceHandler handler = new TestResourceHandler(null);
+        assertEquals("A\nB\n", handler.getCompiledResource(mainUrl, true).getContent());
+        assertEquals(2, handler.getCompiledResource(mainUrl, true).getDependencies().size());
+
+        Files.write(imported, Collections.singletonList("c"));
+        // make sure that the modification is visible even with a coarse file time resolution
+        Files.setLastModifiedTime(imported, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+
+        // not checked (prod mode)
+        assertEquals("A\nB\n", handler.getCompiledResource(mainUrl, false).getContent());
+        assertEquals("A\nC\n", handler.getCompiledResource(mainUrl, true).getContent());
+        assertEquals(2, handler.compilations.get());
+    }
+
+    @Test
+    public void testCacheDirectory() throws Exception {
+        Path cacheDirectory = root.resolve("cache");
+        TestResourceHandler handler = new TestResourceHandler(null);
+        handler.useCacheDirectory(cacheDirectory);
+        assertEquals("A\nB\n", handler.getCompiledResource(mainUrl, true).getContent());
+
+        // a new handler (restart) reads the compiled resource from disk
+        TestResourceHandler newHandler = new TestResourceHandler(null);
+        newHandler.useCacheDirectory(cacheDirectory);
+        assertEquals("A\nB\n", newHandler.getCompiledResource(mainUrl, true).getContent());
+        assertEquals(0, newHandler.compilations.get());
+
+        // the content of an imported resource is changed
+        Files.write(imported, Collections.singletonList("c"));
+        newHandler = new TestResourceHandler(null);
+        newHandler.useCacheDirectory(cacheDirectory);
+        assertEquals("A\nC\n", newHandler.getCompiledResource(mainUrl, true).getContent());
+        assertEquals(1, newHandler.compilations.get());
+    }
+
+    @Test
+    public void testCorruptCacheFile() throws Exception {
+        Path cacheDirectory = root.resolve("cache");
+        TestResourceHandler handler = new TestResourceHandler(null);
+        handler.useCacheDirectory(cacheDirectory);
+        assertEquals("A\nB\n", handler.getCompiledResource(mainUrl, true).getContent());
+
+        // a dependency line without separator and a dependency line with an invalid url
+        for (String header : new String[] { "corrupt", "corrupt 1234" }) {
+            try (Stream<Path> paths = Files.list(cacheDirectory)) {
+                paths.forEach(path -> {
+                    try {
+                        Files.write(path, (header + "\n\ncontent").getBytes(StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+            }
+
+            // a corrupt cache file is a miss
+            TestResourceHandler newHandler = new TestResourceHandler(null);
+            newHandler.useCacheDirectory(cacheDirectory);
+            assertEquals("A\nB\n", newHandler.getCompiledResource(mainUrl, true).getContent());
+            assertEquals(1, newHandler.compilations.get());
+        }
+    }
+
+    /**
+     * Upper cases the resource and replaces the "@import name" lines with the imported resource.
+     */
+    private static class TestResourceHandler extends CompiledResourceHandler {
+
+        private final CountDownLatch compiling;
+        private final AtomicInteger compilations = new AtomicInteger();
+
+        TestResourceHandler(CountDownLatch compiling) {
+            super("/css", "css");
+
+            this.compiling = compiling;
+        }
+
+        @Override
+        protected CompiledResource compile(URL resourceUrl) throws Exception {
+            compilations.incrementAndGet();
+            if (compiling != null) {
+                compiling.await();
+            }
+
+            List<URL> dependencies = new ArrayList<>();
+            String content = compile(resourceUrl, dependencies);
+
+            return new CompiledResource(content, dependencies);
+        }
+
+        private String compile(URL resourceUrl, List<URL> dependencies) throws Exception {
+            dependencies.add(resourceUrl);
+            StringBuilder content = new StringBuilder();
+            for (String line : new String(Files.readAllBytes(Paths.get(resourceUrl.toURI())), StandardCharsets.UTF_8).split("\n")) {
+                if (line.startsWith("@import ")) {
+                    content.append(compile(new URL(resourceUrl, line.substring(8)), dependencies));
+                } else {
+                    content.append(line.toUpperCase()).append('\n');
+                }
+            }
+
+            return content.toString();
+        }
+
+    }
+
+}
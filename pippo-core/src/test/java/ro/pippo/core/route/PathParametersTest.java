@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.route;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PathParametersTest {
+
+    private static PathParameters createParameters() {
+        return new PathParameters(new String[] { "id", "name" }, new String[] { "1", "john" });
+    }
+
+    @Test
+    public void testGet() {
+        PathParameters parameters = createParameters();
+
+        assertEquals(2, parameters.size());
+        assertFalse(parameters.isEmpty());
+        assertEquals("1", parameters.get("id"));
+        assertEquals("john", parameters.get("name"));
+        assertNull(parameters.get("age"));
+        assertNull(parameters.get(null));
+        assertEquals("name", parameters.getName(1));
+        assertEquals("john", parameters.getValue(1));
+    }
+
+    @Test
+    public void testContainsKey() {
+        PathParameters parameters = createParameters();
+
+        assertTrue(parameters.containsKey("id"));
+        assertTrue(parameters.containsKey("name"));
+        assertFalse(parameters.containsKey("age"));
+        assertFalse(parameters.containsKey(null));
+        assertTrue(parameters.containsValue("john"));
+    }
+
+    @Test
+    public void testEmpty() {
+        PathParameters parameters = new PathParameters(new String[0], new String[0]);
+
+        assertTrue(parameters.isEmpty());
+        assertNull(parameters.get("id"));
+        assertFalse(parameters.entrySet().iterator().hasNext());
+    }
+
+    @Test
+    public void testEntrySet() {
+        Iterator<Map.Entry<String, String>> it = createParameters().entrySet().iterator();
+
+        // in the order of the uri pattern
+        Map.Entry<String, String> entry = it.next();
+        assertEquals("id", entry.getKey());
+        assertEquals("1", entry.getValue());
+        entry = it.next();
+        assertEquals("name", entry.getKey());
+        assertEquals("john", entry.getValue());
+        assertFalse(it.hasNext());
+
+        try {
+            it.next();
+            throw new AssertionError("Expected NoSuchElementException");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+
+        assertEquals(2, createParameters().entrySet().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPutIsRejected() {
+        createParameters().put("age", "30");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemoveIsRejected() {
+        createParameters().remove("id");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testClearIsRejected() {
+        createParameters().clear();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testEntrySetValueIsRejected() {
+        createParameters().entrySet().iterator().next().setValue("2");
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        PathParameters parameters = createParameters();
+
+        Map<String, String> map = new HashMap<>();
+        map.put("name", "john");
+        map.put("id", "1");
+
+        assertEquals(map, parameters);
+        assertEquals(parameters, map);
+        assertEquals(map.hashCode(), parameters.hashCode());
+        assertEquals(new LinkedHashMap<>(parameters), map);
+
+        map.put("id", "2");
+        assertNotEquals(map, parameters);
+        assertNotEquals(parameters, map);
+    }
+
+}
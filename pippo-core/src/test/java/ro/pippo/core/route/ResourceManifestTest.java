@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.route;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class ResourceManifestTest {
+
+    private Path root;
+
+    @Before
+    public void before() throws IOException {
+        root = Files.createTempDirectory("pippo");
+    }
+
+    @After
+    public void after() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testBuild() throws IOException {
+        Path directory = root.resolve("classes");
+        Files.createDirectories(directory.resolve("public/css"));
+        Files.write(directory.resolve("public/css/main.css"), "body {}".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("public/main.js"), "alert()".getBytes(StandardCharsets.UTF_8));
+
+        // the resource from the directory is first in the classpath
+        Path jar = root.resolve("lib.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+            // the class loader finds the base path in a jar by its directory entry
+            output.putNextEntry(new JarEntry("public/"));
+            output.closeEntry();
+            write(output, "public/css/main.css", "p {}");
+            write(output, "public/lib.js", "alert()");
+        }
+
+        URL[] urls = { directory.toUri().toURL(), jar.toUri().toURL() };
+        try (URLClassLoader classLoader = new URLClassLoader(urls, null)) {
+            ResourceManifest manifest = ResourceManifest.build(classLoader, "public");
+            assertEquals(3, manifest.size());
+
+            String fingerprint = manifest.getFingerprint("public/css/main.css");
+            assertEquals(ResourceManifest.FINGERPRINT_LENGTH, fingerprint.length());
+            assertEquals("40294f6c20ee96ec", fingerprint);
+
+            // same content, same fingerprint
+            assertEquals(manifest.getFingerprint("public/main.js"), manifest.getFingerprint("public/lib.js"));
+            assertNotEquals(fingerprint, manifest.getFingerprint("public/main.js"));
+            assertNull(manifest.getFingerprint("public/missing.js"));
+        }
+    }
+
+    private static void write(JarOutputStream output, String name, String content) throws IOException {
+        output.putNextEntry(new JarEntry(name));
+        output.write(content.getBytes(StandardCharsets.UTF_8));
+        output.closeEntry();
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void testGet() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(10);
+        assertNull(cache.get("a"));
+
+        assertEquals(Integer.valueOf(1), cache.get("a", key -> 1));
+        // not created again
+        assertEquals(Integer.valueOf(1), cache.get("a", key -> 2));
+        assertEquals(Integer.valueOf(1), cache.putIfAbsent("a", 3));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testSecondChanceEviction() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(3);
+        cache.putIfAbsent("a", 1);
+        cache.putIfAbsent("b", 2);
+        cache.putIfAbsent("c", 3);
+
+        // "a" and "c" are used, "b" is evicted
+        cache.get("a");
+        cache.get("c");
+        cache.putIfAbsent("d", 4);
+        assertEquals(3, cache.size());
+        assertNull(cache.get("b"));
+
+        // nothing was used since the last eviction, the oldest entry is evicted
+        BoundedCache<String, Integer> fifo = new BoundedCache<>(2);
+        fifo.putIfAbsent("a", 1);
+        fifo.putIfAbsent("b", 2);
+        fifo.putIfAbsent("c", 3);
+        assertNull(fifo.get("a"));
+        assertEquals(Integer.valueOf(2), fifo.get("b"));
+        assertEquals(Integer.valueOf(3), fifo.get("c"));
+    }
+
+    @Test
+    public void testWeight() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, String::length);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        assertEquals(8, cache.getWeight());
+
+        // too heavy, not cached
+        assertNull(cache.putIfAbsent("c", "ccccccccccc"));
+        assertNull(cache.get("c"));
+
+        // "a" is evicted to make room
+        cache.put("c", "cccc");
+        assertEquals(8, cache.getWeight());
+        assertNull(cache.get("a"));
+
+        // replace a value
+        cache.put("c", "cc");
+        assertEquals(6, cache.getWeight());
+
+        cache.clear();
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void testDisabled() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(0);
+        assertEquals(Integer.valueOf(1), cache.get("a", key -> 1));
+        assertEquals(Integer.valueOf(2), cache.get("a", key -> 2));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testClear() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(2);
+        cache.putIfAbsent("a", 1);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a"));
+    }
+
+}
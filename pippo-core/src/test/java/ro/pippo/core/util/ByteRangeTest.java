@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.util;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ByteRangeTest {
+
+    @Test
+    public void testSingleRange() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-499", 1000);
+        assertEquals(1, ranges.size());
+        assertEquals(0, ranges.get(0).getStart());
+        assertEquals(499, ranges.get(0).getEnd());
+        assertEquals(500, ranges.get(0).getLength());
+        assertEquals("bytes 0-499/1000", ranges.get(0).getContentRange(1000));
+    }
+
+    @Test
+    public void testOpenRange() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=900-", 1000);
+        assertEquals("bytes 900-999/1000", ranges.get(0).getContentRange(1000));
+
+        // the last position is limited to the resource length
+        ranges = ByteRange.parse("bytes=900-2000", 1000);
+        assertEquals("bytes 900-999/1000", ranges.get(0).getContentRange(1000));
+    }
+
+    @Test
+    public void testSuffixRange() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=-100", 1000);
+        assertEquals("bytes 900-999/1000", ranges.get(0).getContentRange(1000));
+
+        ranges = ByteRange.parse("bytes=-2000", 1000);
+        assertEquals("bytes 0-999/1000", ranges.get(0).getContentRange(1000));
+    }
+
+    @Test
+    public void testMultipleRanges() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=500-599, 0-99,2000-3000", 1000);
+        assertEquals(2, ranges.size());
+        // in ascending order
+        assertEquals(0, ranges.get(0).getStart());
+        assertEquals(500, ranges.get(1).getStart());
+    }
+
+    @Test
+    public void testOverlappingRanges() {
+        // the same range many times is sent once
+        StringBuilder header = new StringBuilder("bytes=0-");
+        for (int i = 1; i < ByteRange.MAX_RANGES; i++) {
+            header.append(",0-");
+        }
+        List<ByteRange> ranges = ByteRange.parse(header.toString(), 1000);
+        assertEquals(1, ranges.size());
+        assertEquals("bytes 0-999/1000", ranges.get(0).getContentRange(1000));
+
+        // overlapping and adjacent ranges are coalesced
+        ranges = ByteRange.parse("bytes=500-700,0-99,600-799,100-199,900-", 1000);
+        assertEquals(3, ranges.size());
+        assertEquals("bytes 0-199/1000", ranges.get(0).getContentRange(1000));
+        assertEquals("bytes 500-799/1000", ranges.get(1).getContentRange(1000));
+        assertEquals("bytes 900-999/1000", ranges.get(2).getContentRange(1000));
+    }
+
+    @Test
+    public void testNotSatisfiable() {
+        assertTrue(ByteRange.parse("bytes=1000-", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-0", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=0-", 0).isEmpty());
+    }
+
+    @Test
+    public void testInvalid() {
+        assertNull(ByteRange.parse(null, 1000));
+        assertNull(ByteRange.parse("items=0-10", 1000));
+        assertNull(ByteRange.parse("bytes=", 1000));
+        assertNull(ByteRange.parse("bytes=10", 1000));
+        assertNull(ByteRange.parse("bytes=10-5", 1000));
+        assertNull(ByteRange.parse("bytes=a-b", 1000));
+    }
+
+    @Test
+    public void testTooManyRanges() {
+        StringBuilder header = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= ByteRange.MAX_RANGES; i++) {
+            header.append(',').append(i).append('-').append(i);
+        }
+        assertNull(ByteRange.parse(header.toString(), 1000));
+    }
+
+}
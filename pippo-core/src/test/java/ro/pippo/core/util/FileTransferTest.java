@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.core.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+
+public class FileTransferTest {
+
+    private Path file;
+
+    @Before
+    public void before() throws IOException {
+        file = Files.createTempFile("pippo", ".txt");
+        Files.write(file, "0123456789".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void after() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testTransfer() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertEquals(10, FileTransfer.transfer(channel, 0, 10, output));
+        }
+        assertEquals("0123456789", output.toString("UTF-8"));
+    }
+
+    @Test
+    public void testTransferRegion() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertEquals(4, FileTransfer.transfer(channel, 3, 4, output));
+        }
+        assertEquals("3456", output.toString("UTF-8"));
+    }
+
+    @Test
+    public void testTransferWithContainerMethod() throws IOException {
+        ContainerOutputStream output = new ContainerOutputStream();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertEquals(10, FileTransfer.transfer(channel, 0, 10, output));
+        }
+        assertEquals("0123456789", output.toString("UTF-8"));
+        assertEquals(1, output.transfers);
+    }
+
+    /**
+     * An output stream with the method used by Undertow for sendfile.
+     */
+    public static class ContainerOutputStream extends ByteArrayOutputStream {
+
+        private int transfers;
+
+        public void transferFrom(FileChannel source) throws IOException {
+            transfers++;
+            ByteBuffer buffer = ByteBuffer.allocate((int) source.size());
+            source.read(buffer, 0);
+            write(buffer.array(), 0, buffer.position());
+        }
+
+    }
+
+}
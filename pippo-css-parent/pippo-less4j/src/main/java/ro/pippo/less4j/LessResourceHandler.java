@@ -20,62 +20,68 @@ import com.github.sommeri.less4j.LessSource;
 import com.github.sommeri.less4j.core.ThreadUnsafeLessCompiler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import ro.pippo.core.PippoRuntimeException;
-import ro.pippo.core.route.ClasspathResourceHandler;
-import ro.pippo.core.route.RouteContext;
+import ro.pippo.core.route.CompiledResourceHandler;
 
-import java.io.IOException;
 import java.net.URL;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author Daniel Jipa
  */
-public class LessResourceHandler extends ClasspathResourceHandler {
+public class LessResourceHandler extends CompiledResourceHandler {
 
     private static final Logger log = LoggerFactory.getLogger(LessResourceHandler.class);
 
-    private boolean minify;
-    private Map<String, String> sourceMap = new ConcurrentHashMap<>(); // cache
-
     public LessResourceHandler(String urlPath, String resourceBasePath) {
         super(urlPath, resourceBasePath);
     }
 
-    public LessResourceHandler useMinimized(boolean minimized){
-        this.minify = minimized;
+    @Override
+    public LessResourceHandler useMinimized(boolean minimized) {
+        super.useMinimized(minimized);
 
         return this;
     }
 
     @Override
-    protected void sendResource(URL resourceUrl, RouteContext routeContext) throws IOException {
-        try {
-            // compile less to css
-            LessSource.URLSource source = new LessSource.URLSource(resourceUrl);
-            String content = source.getContent();
-            String result = sourceMap.get(content);
-            if (result == null) {
-                ThreadUnsafeLessCompiler compiler = new ThreadUnsafeLessCompiler();
-                LessCompiler.Configuration configuration = new LessCompiler.Configuration();
-                configuration.setCompressing(minify);
-                LessCompiler.CompilationResult compilationResult = compiler.compile(resourceUrl, configuration);
-                for (LessCompiler.Problem warning : compilationResult.getWarnings()) {
-                    log.warn("Line: {}, Character: {}, Message: {} ", warning.getLine(), warning.getCharacter(), warning.getMessage());
-                }
-                result = compilationResult.getCss();
+    public LessResourceHandler useCacheDirectory(Path cacheDirectory) {
+        super.useCacheDirectory(cacheDirectory);
 
-                if (routeContext.getApplication().getPippoSettings().isProd()) {
-                    sourceMap.put(content, result);
-                }
-            }
+        return this;
+    }
 
-            // send css
-            routeContext.getResponse().contentType("text/css");
-            routeContext.getResponse().ok().send(result);
-        } catch (Exception e) {
-            throw new PippoRuntimeException(e);
+    @Override
+    protected CompiledResource compile(URL resourceUrl) throws Exception {
+        // compile less to css
+        LessSource.URLSource source = new LessSource.URLSource(resourceUrl);
+        // the compiler is cheap to create and it's not thread safe
+        ThreadUnsafeLessCompiler compiler = new ThreadUnsafeLessCompiler();
+        LessCompiler.Configuration configuration = new LessCompiler.Configuration();
+        configuration.setCompressing(isMinimized());
+        LessCompiler.CompilationResult compilationResult = compiler.compile(source, configuration);
+        for (LessCompiler.Problem warning : compilationResult.getWarnings()) {
+            log.warn("Line: {}, Character: {}, Message: {} ", warning.getLine(), warning.getCharacter(), warning.getMessage());
+        }
+
+        List<URL> dependencies = new ArrayList<>();
+        addDependencies(source, dependencies);
+
+        return new CompiledResource(compilationResult.getCss(), dependencies);
+    }
+
+    /**
+     * Adds the source and all sources imported by it (recursively).
+     */
+    private void addDependencies(LessSource source, List<URL> dependencies) {
+        if (source instanceof LessSource.URLSource) {
+            dependencies.add(((LessSource.URLSource) source).getInputURL());
+        }
+        if (source instanceof LessSource.AbstractHierarchicalSource) {
+            for (LessSource importedSource : ((LessSource.AbstractHierarchicalSource) source).getImportedSources()) {
+                addDependencies(importedSource, dependencies);
+            }
         }
     }
 
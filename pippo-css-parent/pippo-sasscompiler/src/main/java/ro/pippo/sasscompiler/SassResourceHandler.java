@@ -18,59 +18,65 @@ package ro.pippo.sasscompiler;
 import com.vaadin.sass.internal.ScssContext;
 import com.vaadin.sass.internal.ScssStylesheet;
 
-import ro.pippo.core.PippoRuntimeException;
-import ro.pippo.core.route.ClasspathResourceHandler;
-import ro.pippo.core.route.RouteContext;
+import ro.pippo.core.route.CompiledResourceHandler;
 
-import java.io.IOException;
+import java.io.File;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author Daniel Jipa
  */
-public class SassResourceHandler extends ClasspathResourceHandler {
-
-    private boolean minify;
-    private Map<String, String> sourceMap = new ConcurrentHashMap<>(); // cache
+public class SassResourceHandler extends CompiledResourceHandler {
 
     public SassResourceHandler(String urlPath, String resourceBasePath) {
         super(urlPath, resourceBasePath);
     }
 
-    public SassResourceHandler useMinimized(boolean minimized){
-        this.minify = minimized;
+    @Override
+    public SassResourceHandler useMinimized(boolean minimized) {
+        super.useMinimized(minimized);
 
         return this;
     }
 
     @Override
-    protected void sendResource(URL resourceUrl, RouteContext routeContext) throws IOException {
-        try {
-            // compile sass to css
-            ScssContext.UrlMode urlMode = ScssContext.UrlMode.ABSOLUTE;
-            ScssStylesheet scssStylesheet = ScssStylesheet.get(resourceUrl.getFile());
-            String content = scssStylesheet.toString();
-            String result = sourceMap.get(content);
-            if (result == null) {
-                scssStylesheet.compile(urlMode);
-                Writer writer = new StringWriter();
-                scssStylesheet.write(writer, minify);
-                result = writer.toString();
+    public SassResourceHandler useCacheDirectory(Path cacheDirectory) {
+        super.useCacheDirectory(cacheDirectory);
+
+        return this;
+    }
 
-                if (routeContext.getApplication().getPippoSettings().isDev()) {
-                    sourceMap.put(content, result);
-                }
-            }
+    @Override
+    protected CompiledResource compile(URL resourceUrl) throws Exception {
+        // compile sass to css
+        ScssContext.UrlMode urlMode = ScssContext.UrlMode.ABSOLUTE;
+        ScssStylesheet scssStylesheet = ScssStylesheet.get(resourceUrl.getFile());
+        scssStylesheet.compile(urlMode);
+        Writer writer = new StringWriter();
+        scssStylesheet.write(writer, isMinimized());
+
+        // the stylesheet and the imported stylesheets
+        List<URL> dependencies = new ArrayList<>();
+        dependencies.add(resourceUrl);
+        for (String sourceUri : scssStylesheet.getSourceUris()) {
+            dependencies.add(toUrl(sourceUri));
+        }
 
-            // send css
-            routeContext.getResponse().contentType("text/css");
-            routeContext.getResponse().ok().send(result);
-        }  catch (Exception e) {
-            throw new PippoRuntimeException(e);
+        return new CompiledResource(writer.toString(), dependencies);
+    }
+
+    private URL toUrl(String sourceUri) throws MalformedURLException {
+        try {
+            return new URL(sourceUri);
+        } catch (MalformedURLException e) {
+            // a file path
+            return new File(sourceUri).toURI().toURL();
         }
     }
 
@@ -15,7 +15,10 @@
  */
 package ro.pippo.freemarker;
 
+import java.io.IOException;
 import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
@@ -26,13 +29,16 @@ import ro.pippo.core.Messages;
 import ro.pippo.core.PippoConstants;
 import ro.pippo.core.PippoRuntimeException;
 import ro.pippo.core.PippoSettings;
+import ro.pippo.core.StringTemplateCache;
 import ro.pippo.core.TemplateEngine;
 import ro.pippo.core.route.Router;
+import ro.pippo.core.util.BoundedCache;
 import ro.pippo.core.util.StringUtils;
 import freemarker.log.Logger;
 import freemarker.template.Configuration;
 import freemarker.template.SimpleScalar;
 import freemarker.template.Template;
+import freemarker.template.TemplateModel;
 
 /**
  * @author Decebal Suiu
@@ -43,12 +49,19 @@ public class FreemarkerTemplateEngine implements TemplateEngine {
     public static final String FTL = "ftl";
     public static final String FILE_SUFFIX = "." + FTL;
 
+    private static final int MAX_HELPERS = 64;
+    private static final int DEFAULT_CACHE_SIZE = 250;
+
     private Languages languages;
     private Messages messages;
 
     private WebjarsAtMethod webjarResourcesMethod;
     private PublicAtMethod publicResourcesMethod;
     private Configuration configuration;
+    private StringTemplateCache<Template> stringTemplateCache;
+
+    // "language|locale" -> helper methods, bounded
+    private final BoundedCache<String, Map<String, TemplateModel>> helpers = new BoundedCache<>(MAX_HELPERS);
 
     static {
         try {
@@ -89,9 +102,12 @@ public class FreemarkerTemplateEngine implements TemplateEngine {
             // never update the templates in production or while testing...
             configuration.setTemplateUpdateDelay(Integer.MAX_VALUE);
 
-            // Hold 20 templates as strong references as recommended by:
+            // hold the templates (a template is cached for each locale) as strong references,
+            // at least 20 as recommended by:
             // http://freemarker.sourceforge.net/docs/pgui_config_templateloading.html
-            configuration.setCacheStorage(new freemarker.cache.MruCacheStorage(20, Integer.MAX_VALUE));
+            int cacheSize = pippoSettings.getInteger(PippoConstants.SETTING_TEMPLATE_CACHE_SIZE, DEFAULT_CACHE_SIZE);
+            int strongSizeLimit = Math.max(20, cacheSize);
+            configuration.setCacheStorage(new freemarker.cache.MruCacheStorage(strongSizeLimit, Integer.MAX_VALUE));
         }
 
         // set global template variables
@@ -101,68 +117,105 @@ public class FreemarkerTemplateEngine implements TemplateEngine {
         webjarResourcesMethod = new WebjarsAtMethod(router);
         publicResourcesMethod = new PublicAtMethod(router);
 
+        stringTemplateCache = new StringTemplateCache<>(pippoSettings);
+        helpers.clear();
+
         // allow custom initialization
         init(application, configuration);
     }
 
     @Override
     public void renderString(String templateContent, Map<String, Object> model, Writer writer) {
-        // prepare the locale-aware i18n method
-        String language = (String) model.get(PippoConstants.REQUEST_PARAMETER_LANG);
-        if (StringUtils.isNullOrEmpty(language)) {
-            language = languages.getLanguageOrDefault(language);
-        }
-        model.put("i18n", new I18nMethod(messages, language));
-
-        // prepare the locale-aware prettyTime method
-        Locale locale = (Locale) model.get(PippoConstants.REQUEST_PARAMETER_LOCALE);
-        if (locale == null) {
-            locale = languages.getLocaleOrDefault(language);
+        try {
+            String language = getLanguage(model);
+            Locale locale = getLocale(model, language);
+            Template template = stringTemplateCache.get(templateContent, this::compileStringTemplate);
+            template.process(createTemplateModel(model, language, locale), writer);
+        } catch (Exception e) {
+            throw new PippoRuntimeException(e);
         }
-        model.put("prettyTime", new PrettyTimeMethod(locale));
-        model.put("formatTime", new FormatTimeMethod(locale));
-        model.put("webjarsAt", webjarResourcesMethod);
-        model.put("publicAt", publicResourcesMethod);
+    }
 
+    @Override
+    public void renderResource(String templateName, Map<String, Object> model, Writer writer) {
         try {
-            Template template = new Template("StringTemplate", templateContent, configuration);
-            template.process(model, writer);
+            if (templateName.indexOf('.') == -1) {
+                templateName += FILE_SUFFIX;
+            }
+            String language = getLanguage(model);
+            Locale locale = getLocale(model, language);
+            Template template = configuration.getTemplate(templateName, locale);
+            template.process(createTemplateModel(model, language, locale), writer);
         } catch (Exception e) {
             throw new PippoRuntimeException(e);
         }
     }
 
     @Override
-    public void renderResource(String templateName, Map<String, Object> model, Writer writer) {
-        // prepare the locale-aware i18n method
+    public String getFileExtension() {
+        return FTL;
+    }
+
+    @Override
+    public void compile(String templateName) {
+        try {
+            // a template is cached by locale, so compile it for the locales used by renderResource
+            for (Locale locale : languages.getRegisteredLocales()) {
+                configuration.getTemplate(templateName, locale);
+            }
+        } catch (IOException e) {
+            throw new PippoRuntimeException(e, "Failed to compile template '{}'", templateName);
+        }
+    }
+
+    protected void init(Application application, Configuration configuration) {
+    }
+
+    private String getLanguage(Map<String, Object> model) {
         String language = (String) model.get(PippoConstants.REQUEST_PARAMETER_LANG);
         if (StringUtils.isNullOrEmpty(language)) {
             language = languages.getLanguageOrDefault(language);
         }
-        model.put("i18n", new I18nMethod(messages, language));
 
-        // prepare the locale-aware prettyTime method
+        return language;
+    }
+
+    private Locale getLocale(Map<String, Object> model, String language) {
         Locale locale = (Locale) model.get(PippoConstants.REQUEST_PARAMETER_LOCALE);
         if (locale == null) {
             locale = languages.getLocaleOrDefault(language);
         }
-        model.put("prettyTime", new PrettyTimeMethod(locale));
-        model.put("formatTime", new FormatTimeMethod(locale));
-        model.put("webjarsAt", webjarResourcesMethod);
-        model.put("publicAt", publicResourcesMethod);
 
-        try {
-            if (templateName.indexOf('.') == -1) {
-                templateName += FILE_SUFFIX;
-            }
-            Template template = configuration.getTemplate(templateName, locale);
-            template.process(model, writer);
-        } catch (Exception e) {
-            throw new PippoRuntimeException(e);
-        }
+        return locale;
     }
 
-    protected void init(Application application, Configuration configuration) {
+    private PippoTemplateModel createTemplateModel(Map<String, Object> model, String language, Locale locale) {
+        // the helpers are immutable so they are shared by all renders with the same language and locale
+        String key = language + '|' + locale;
+        Map<String, TemplateModel> localeHelpers = helpers.get(key, k -> createHelpers(language, locale));
+
+        return new PippoTemplateModel(model, localeHelpers, configuration.getObjectWrapper());
+    }
+
+    private Map<String, TemplateModel> createHelpers(String language, Locale locale) {
+        Map<String, TemplateModel> localeHelpers = new HashMap<>();
+        // the locale-aware i18n method
+        localeHelpers.put("i18n", new I18nMethod(messages, language));
+        // the locale-aware prettyTime and formatTime methods
+        localeHelpers.put("prettyTime", new PrettyTimeMethod(locale));
+        localeHelpers.put("formatTime", new FormatTimeMethod(locale));
+        localeHelpers.put("webjarsAt", webjarResourcesMethod);
+        localeHelpers.put("publicAt", publicResourcesMethod);
+
+        return Collections.unmodifiableMap(localeHelpers);
+    }
+
+    private Template compileStringTemplate(String templateContent) {
+        try {
+            return new Template("StringTemplate", templateContent, configuration);
+        } catch (IOException e) {
+            throw new PippoRuntimeException(e, "Failed to compile string template");
+        }
     }
 
 }
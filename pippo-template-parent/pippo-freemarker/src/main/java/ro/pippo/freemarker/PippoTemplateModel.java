@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.freemarker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import freemarker.template.ObjectWrapper;
+import freemarker.template.SimpleCollection;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateHashModelEx;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+
+/**
+ * The root data model of a template: the model of the request layered over the (shared)
+ * helper methods of a language and locale.
+ * The model of the request is neither copied nor modified, its values are wrapped on the first
+ * lookup and the wrapped values are kept for the rest of the render (like a {@link freemarker.template.SimpleHash}).
+ * A model is used by a single render, so it's not thread safe.
+ */
+class PippoTemplateModel implements TemplateHashModelEx {
+
+    private final Map<String, Object> model;
+    private final Map<String, TemplateModel> helpers;
+    private final ObjectWrapper objectWrapper;
+    private final Map<String, TemplateModel> wrappedValues;
+
+    PippoTemplateModel(Map<String, Object> model, Map<String, TemplateModel> helpers, ObjectWrapper objectWrapper) {
+        this.model = model;
+        this.helpers = helpers;
+        this.objectWrapper = objectWrapper;
+
+        wrappedValues = new HashMap<>();
+    }
+
+    @Override
+    public TemplateModel get(String key) throws TemplateModelException {
+        TemplateModel wrappedValue = wrappedValues.get(key);
+        if (wrappedValue != null) {
+            return wrappedValue;
+        }
+
+        Object value = model.get(key);
+        if (value != null) {
+            wrappedValue = objectWrapper.wrap(value);
+            wrappedValues.put(key, wrappedValue);
+
+            return wrappedValue;
+        }
+
+        return helpers.get(key);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return model.isEmpty() && helpers.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return getKeys().size();
+    }
+
+    @Override
+    public TemplateCollectionModel keys() {
+        return new SimpleCollection(getKeys(), objectWrapper);
+    }
+
+    @Override
+    public TemplateCollectionModel values() throws TemplateModelException {
+        Set<String> keys = getKeys();
+        List<TemplateModel> values = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            values.add(get(key));
+        }
+
+        return new SimpleCollection(values, objectWrapper);
+    }
+
+    private Set<String> getKeys() {
+        // a model entry shadows the helper with the same name
+        Set<String> keys = new LinkedHashSet<>(model.keySet());
+        keys.addAll(helpers.keySet());
+
+        return keys;
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.pippo.freemarker;
+
+import org.junit.Before;
+import org.junit.Test;
+import ro.pippo.core.Application;
+import ro.pippo.core.PippoConstants;
+import ro.pippo.core.PippoSettings;
+import ro.pippo.core.RuntimeMode;
+
+import java.io.StringWriter;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the helper methods of the layered template model.
+ */
+public class FreemarkerTemplateEngineTest {
+
+    private static final String TEMPLATE = "${formatTime(date, \"MMMM\")}";
+
+    private FreemarkerTemplateEngine engine;
+    private Date date;
+
+    @Before
+    public void before() {
+        PippoSettings pippoSettings = new PippoSettings(RuntimeMode.TEST);
+        pippoSettings.overrideSetting(PippoConstants.SETTING_APPLICATION_LANGUAGES, "en, fr");
+        Application application = new Application(pippoSettings);
+
+        engine = new FreemarkerTemplateEngine();
+        engine.init(application);
+
+        date = new GregorianCalendar(2016, Calendar.DECEMBER, 12).getTime();
+    }
+
+    @Test
+    public void testHelper() {
+        Map<String, Object> model = new HashMap<>();
+        model.put("date", date);
+
+        // the default language
+        assertEquals("December", render(TEMPLATE, model));
+    }
+
+    @Test
+    public void testModelShadowsHelper() {
+        Map<String, Object> model = new HashMap<>();
+        model.put("formatTime", "shadowed");
+
+        assertEquals("shadowed", render("${formatTime}", model));
+        // the helper is not replaced for the next renders
+        assertEquals("December", render(TEMPLATE, newModel("en", Locale.ENGLISH)));
+    }
+
+    @Test
+    public void testLocaleSwitch() {
+        // the helpers are cached by language and locale, each render gets the helpers of its locale
+        assertEquals("December", render(TEMPLATE, newModel("en", Locale.ENGLISH)));
+        assertEquals("décembre", render(TEMPLATE, newModel("fr", Locale.FRENCH)));
+        assertEquals("December", render(TEMPLATE, newModel("en", Locale.ENGLISH)));
+        assertEquals("décembre", render(TEMPLATE, newModel("fr", Locale.FRENCH)));
+    }
+
+    private Map<String, Object> newModel(String language, Locale locale) {
+        Map<String, Object> model = new HashMap<>();
+        model.put(PippoConstants.REQUEST_PARAMETER_LANG, language);
+        model.put(PippoConstants.REQUEST_PARAMETER_LOCALE, locale);
+        model.put("date", date);
+
+        return model;
+    }
+
+    private String render(String template, Map<String, Object> model) {
+        StringWriter writer = new StringWriter();
+        engine.renderString(template, model, writer);
+
+        return writer.toString();
+    }
+
+}
@@ -33,6 +33,7 @@ import ro.pippo.core.Messages;
 import ro.pippo.core.PippoConstants;
 import ro.pippo.core.PippoRuntimeException;
 import ro.pippo.core.PippoSettings;
+import ro.pippo.core.StringTemplateCache;
 import ro.pippo.core.TemplateEngine;
 import ro.pippo.core.route.Router;
 import ro.pippo.core.util.StringUtils;
@@ -55,6 +56,7 @@ public class GroovyTemplateEngine implements TemplateEngine {
     private Router router;
 
     private MarkupTemplateEngine engine;
+    private StringTemplateCache<Template> stringTemplateCache;
 
     @Override
     public void init(Application application) {
@@ -92,12 +94,13 @@ public class GroovyTemplateEngine implements TemplateEngine {
         init(application, configuration);
 
         engine = new MarkupTemplateEngine(classLoader, configuration, cachingResolver);
+        stringTemplateCache = new StringTemplateCache<>(pippoSettings);
     }
 
     @Override
     public void renderString(String templateContent, Map<String, Object> model, Writer writer) {
         try {
-            Template groovyTemplate = engine.createTemplate(templateContent);
+            Template groovyTemplate = stringTemplateCache.get(templateContent, this::compileStringTemplate);
             PippoGroovyTemplate gt = (PippoGroovyTemplate) groovyTemplate.make(model);
             gt.setup(languages, messages, router);
             gt.writeTo(writer);
@@ -131,7 +134,29 @@ public class GroovyTemplateEngine implements TemplateEngine {
         }
     }
 
+    @Override
+    public String getFileExtension() {
+        return GROOVY;
+    }
+
+    @Override
+    public void compile(String templateName) {
+        try {
+            engine.createTemplateByPath(templateName);
+        } catch (ClassNotFoundException | IOException e) {
+            throw new PippoRuntimeException(e, "Failed to compile template '{}'", templateName);
+        }
+    }
+
     protected void init(Application application, TemplateConfiguration configuration) {
     }
 
+    private Template compileStringTemplate(String templateContent) {
+        try {
+            return engine.createTemplate(templateContent);
+        } catch (ClassNotFoundException | IOException e) {
+            throw new PippoRuntimeException(e, "Failed to compile string template");
+        }
+    }
+
 }
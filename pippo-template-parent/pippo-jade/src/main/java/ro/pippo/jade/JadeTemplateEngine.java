@@ -31,8 +31,10 @@ import ro.pippo.core.Messages;
 import ro.pippo.core.PippoConstants;
 import ro.pippo.core.PippoRuntimeException;
 import ro.pippo.core.PippoSettings;
+import ro.pippo.core.StringTemplateCache;
 import ro.pippo.core.TemplateEngine;
 import ro.pippo.core.route.Router;
+import ro.pippo.core.util.BoundedCache;
 import ro.pippo.core.util.StringUtils;
 import de.neuland.jade4j.Jade4J.Mode;
 import de.neuland.jade4j.JadeConfiguration;
@@ -45,10 +47,19 @@ import de.neuland.jade4j.template.TemplateLoader;
 @MetaInfServices(TemplateEngine.class)
 public class JadeTemplateEngine implements TemplateEngine {
 
+    public static final String JADE = "jade";
+    public static final String FILE_SUFFIX = "." + JADE;
+
+    private static final int MAX_HELPERS = 64;
+
     private Languages languages;
     private Messages messages;
     private Router router;
     private JadeConfiguration configuration;
+    private StringTemplateCache<JadeTemplate> stringTemplateCache;
+
+    // "language|locale" -> helper, bounded
+    private final BoundedCache<String, PippoHelper> helpers = new BoundedCache<>(MAX_HELPERS);
 
     @Override
     public void init(Application application) {
@@ -76,6 +87,9 @@ public class JadeTemplateEngine implements TemplateEngine {
 
         // allow custom initialization
         init(application, configuration);
+
+        stringTemplateCache = new StringTemplateCache<>(pippoSettings);
+        helpers.clear();
     }
 
     @Override
@@ -92,17 +106,9 @@ public class JadeTemplateEngine implements TemplateEngine {
             locale = languages.getLocaleOrDefault(language);
         }
 
-        model.put("pippo", new PippoHelper(messages, language, locale, router));
-        try (StringReader reader = new StringReader(templateContent)) {
-            ReaderTemplateLoader stringTemplateLoader = new ReaderTemplateLoader(reader, "StringTemplate");
-
-            JadeConfiguration stringTemplateConfiguration = new JadeConfiguration();
-            stringTemplateConfiguration.setCaching(false);
-            stringTemplateConfiguration.setTemplateLoader(stringTemplateLoader);
-            stringTemplateConfiguration.setMode(configuration.getMode());
-            stringTemplateConfiguration.setPrettyPrint(configuration.isPrettyPrint());
-
-            JadeTemplate stringTemplate = configuration.getTemplate("StringTemplate");
+        model.put("pippo", getPippoHelper(language, locale));
+        try {
+            JadeTemplate stringTemplate = stringTemplateCache.get(templateContent, this::compileStringTemplate);
             configuration.renderTemplate(stringTemplate, model, writer);
             writer.flush();
         } catch (Exception e) {
@@ -124,7 +130,7 @@ public class JadeTemplateEngine implements TemplateEngine {
             locale = languages.getLocaleOrDefault(language);
         }
 
-        model.put("pippo", new PippoHelper(messages, language, locale, router));
+        model.put("pippo", getPippoHelper(language, locale));
         try {
             JadeTemplate template = configuration.getTemplate(templateName);
             configuration.renderTemplate(template, model, writer);
@@ -134,12 +140,46 @@ public class JadeTemplateEngine implements TemplateEngine {
         }
     }
 
+    @Override
+    public String getFileExtension() {
+        return JADE;
+    }
+
+    @Override
+    public void compile(String templateName) {
+        try {
+            configuration.getTemplate(templateName);
+        } catch (Exception e) {
+            throw new PippoRuntimeException(e, "Failed to compile template '{}'", templateName);
+        }
+    }
+
     protected void init(Application application, JadeConfiguration configuration) {
     }
 
-    private static class ClassTemplateLoader implements TemplateLoader {
+    private PippoHelper getPippoHelper(String language, Locale locale) {
+        // the helper is immutable so it's shared by all renders with the same language and locale
+        String key = language + '|' + locale;
+        return helpers.get(key, k -> new PippoHelper(messages, language, locale, router));
+    }
 
-        private static final String SUFFIX = ".jade";
+    private JadeTemplate compileStringTemplate(String templateContent) {
+        try (StringReader reader = new StringReader(templateContent)) {
+            ReaderTemplateLoader stringTemplateLoader = new ReaderTemplateLoader(reader, "StringTemplate");
+
+            JadeConfiguration stringTemplateConfiguration = new JadeConfiguration();
+            stringTemplateConfiguration.setCaching(false);
+            stringTemplateConfiguration.setTemplateLoader(stringTemplateLoader);
+            stringTemplateConfiguration.setMode(configuration.getMode());
+            stringTemplateConfiguration.setPrettyPrint(configuration.isPrettyPrint());
+
+            return stringTemplateConfiguration.getTemplate("StringTemplate");
+        } catch (Exception e) {
+            throw new PippoRuntimeException(e, "Failed to compile string template");
+        }
+    }
+
+    private static class ClassTemplateLoader implements TemplateLoader {
 
         private Class<?> clazz;
         private String pathPrefix;
@@ -163,8 +203,8 @@ public class JadeTemplateEngine implements TemplateEngine {
 
         @Override
         public Reader getReader(String name) throws IOException {
-            if (!name.endsWith(SUFFIX)) {
-                name += SUFFIX;
+            if (!name.endsWith(FILE_SUFFIX)) {
+                name += FILE_SUFFIX;
             }
 
             String fullPath = pathPrefix + name;
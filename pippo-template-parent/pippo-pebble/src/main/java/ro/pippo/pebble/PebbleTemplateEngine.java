@@ -33,8 +33,10 @@ import ro.pippo.core.Languages;
 import ro.pippo.core.PippoConstants;
 import ro.pippo.core.PippoRuntimeException;
 import ro.pippo.core.PippoSettings;
+import ro.pippo.core.StringTemplateCache;
 import ro.pippo.core.TemplateEngine;
 import ro.pippo.core.route.Router;
+import ro.pippo.core.util.BoundedCache;
 import ro.pippo.core.util.StringUtils;
 
 import java.io.Writer;
@@ -57,7 +59,13 @@ public class PebbleTemplateEngine implements TemplateEngine {
 
     private Languages languages;
 
+    private static final int MAX_LOCALIZED_TEMPLATES = 1024;
+
     private PebbleEngine engine;
+    // "templateName|locale" -> template (null in dev mode)
+    private BoundedCache<String, PebbleTemplate> localizedTemplates;
+    private PebbleEngine stringEngine;
+    private StringTemplateCache<PebbleTemplate> stringTemplateCache;
 
     @Override
     public void init(Application application) {
@@ -95,12 +103,23 @@ public class PebbleTemplateEngine implements TemplateEngine {
             // do not cache templates in dev mode
             builder.templateCache(null);
             builder.extension(new DebugExtension());
+            localizedTemplates = null;
+        } else {
+            localizedTemplates = new BoundedCache<>(MAX_LOCALIZED_TEMPLATES);
         }
 
         // allow custom initialization
         init(application, builder);
 
         engine = builder.build();
+
+        // the string templates are cached by content in stringTemplateCache
+        stringEngine = new PebbleEngine.Builder()
+            .loader(new StringLoader())
+            .strictVariables(engine.isStrictVariables())
+            .templateCache(null)
+            .build();
+        stringTemplateCache = new StringTemplateCache<>(pippoSettings);
     }
 
     @Override
@@ -115,13 +134,7 @@ public class PebbleTemplateEngine implements TemplateEngine {
         }
 
         try {
-            PebbleEngine stringEngine = new PebbleEngine.Builder()
-                .loader(new StringLoader())
-                .strictVariables(engine.isStrictVariables())
-                .templateCache(null)
-                .build();
-
-            PebbleTemplate template = stringEngine.getTemplate(templateContent);
+            PebbleTemplate template = stringTemplateCache.get(templateContent, this::compileStringTemplate);
             template.evaluate(writer, model, locale);
             writer.flush();
         } catch (Exception e) {
@@ -141,21 +154,7 @@ public class PebbleTemplateEngine implements TemplateEngine {
         }
 
         try {
-            PebbleTemplate template = null;
-            if (locale != null) {
-                // try the complete Locale
-                template = getTemplate(templateName, locale.toString());
-                if (template == null) {
-                    // try only the language
-                    template = getTemplate(templateName, locale.getLanguage());
-                }
-            }
-
-            if (template == null) {
-                // fallback to the template without any language or locale
-                template = engine.getTemplate(templateName);
-            }
-
+            PebbleTemplate template = getLocalizedTemplate(templateName, locale);
             template.evaluate(writer, model, locale);
             writer.flush();
         } catch (Exception e) {
@@ -163,9 +162,63 @@ public class PebbleTemplateEngine implements TemplateEngine {
         }
     }
 
+    @Override
+    public String getFileExtension() {
+        return PEBBLE;
+    }
+
+    @Override
+    public void compile(String templateName) {
+        try {
+            String name = StringUtils.removeEnd(templateName, FILE_SUFFIX);
+            engine.getTemplate(name);
+            // warm the localized lookup of renderResource for the application locales
+            for (Locale locale : languages.getRegisteredLocales()) {
+                getLocalizedTemplate(name, locale);
+            }
+        } catch (PebbleException e) {
+            throw new PippoRuntimeException(e, "Failed to compile template '{}'", templateName);
+        }
+    }
+
     protected void init(Application application, PebbleEngine.Builder builder) {
     }
 
+    private PebbleTemplate getLocalizedTemplate(String templateName, Locale locale) throws PebbleException {
+        if (localizedTemplates == null) {
+            return findLocalizedTemplate(templateName, locale);
+        }
+
+        // a missing localized template is reported by an exception so the lookup result is cached
+        String key = templateName + '|' + locale;
+        PebbleTemplate template = localizedTemplates.get(key);
+        if (template == null) {
+            template = findLocalizedTemplate(templateName, locale);
+            localizedTemplates.putIfAbsent(key, template);
+        }
+
+        return template;
+    }
+
+    private PebbleTemplate findLocalizedTemplate(String templateName, Locale locale) throws PebbleException {
+        PebbleTemplate template = null;
+        if (locale != null) {
+            // try the complete Locale
+            template = getTemplate(templateName, locale.toString());
+            if (template == null) {
+                // try only the language
+                template = getTemplate(templateName, locale.getLanguage());
+            }
+        }
+
+        if (template == null) {
+            // fallback to the template without any language or locale
+            template = engine.getTemplate(templateName);
+        }
+
+        return template;
+    }
+
     private PebbleTemplate getTemplate(String templateName, String localePart) throws PebbleException {
         PebbleTemplate template = null;
         try {
@@ -182,4 +235,12 @@ public class PebbleTemplateEngine implements TemplateEngine {
         return template;
     }
 
+    private PebbleTemplate compileStringTemplate(String templateContent) {
+        try {
+            return stringEngine.getTemplate(templateContent);
+        } catch (PebbleException e) {
+            throw new PippoRuntimeException(e, "Failed to compile string template");
+        }
+    }
+
 }
@@ -31,6 +31,7 @@ import ro.pippo.core.Languages;
 import ro.pippo.core.PippoConstants;
 import ro.pippo.core.PippoRuntimeException;
 import ro.pippo.core.PippoSettings;
+import ro.pippo.core.StringTemplateCache;
 import ro.pippo.core.TemplateEngine;
 import ro.pippo.core.route.Router;
 import ro.pippo.core.util.StringUtils;
@@ -55,6 +56,7 @@ public class TrimouTemplateEngine implements TemplateEngine {
     private Languages languages;
     private ThreadLocalLocaleSupport localeSupport;
     private MustacheEngine engine;
+    private StringTemplateCache<Mustache> stringTemplateCache;
 
     @Override
     public void init(Application application) {
@@ -98,6 +100,7 @@ public class TrimouTemplateEngine implements TemplateEngine {
         init(application, builder);
 
         engine = builder.build();
+        stringTemplateCache = new StringTemplateCache<>(pippoSettings);
     }
 
     @Override
@@ -115,7 +118,8 @@ public class TrimouTemplateEngine implements TemplateEngine {
 
         try {
             localeSupport.setCurrentLocale(locale);
-            Mustache template = engine.compileMustache("StringTemplate", templateContent);
+            Mustache template = stringTemplateCache.get(templateContent,
+                content -> engine.compileMustache("StringTemplate", content));
             template.render(writer, model);
             writer.flush();
         } catch (Exception e) {
@@ -178,6 +182,18 @@ public class TrimouTemplateEngine implements TemplateEngine {
         }
     }
 
+    @Override
+    public String getFileExtension() {
+        return MUSTACHE;
+    }
+
+    @Override
+    public void compile(String templateName) {
+        if (engine.getMustache(StringUtils.removeEnd(templateName, FILE_SUFFIX)) == null) {
+            throw new PippoRuntimeException("Template '{}' not found!", templateName);
+        }
+    }
+
     protected void init(Application application, MustacheEngineBuilder builder) {
     }
 
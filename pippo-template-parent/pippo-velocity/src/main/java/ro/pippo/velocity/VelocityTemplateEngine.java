@@ -28,8 +28,10 @@ import ro.pippo.core.Messages;
 import ro.pippo.core.PippoConstants;
 import ro.pippo.core.PippoRuntimeException;
 import ro.pippo.core.PippoSettings;
+import ro.pippo.core.StringTemplateCache;
 import ro.pippo.core.TemplateEngine;
 import ro.pippo.core.route.Router;
+import ro.pippo.core.util.BoundedCache;
 import ro.pippo.core.util.StringUtils;
 
 import java.io.StringReader;
@@ -47,10 +49,16 @@ public class VelocityTemplateEngine implements TemplateEngine {
     public static final String VM = "vm";
     public static final String FILE_SUFFIX = "." + VM;
 
+    private static final int MAX_HELPERS_CONTEXTS = 64;
+
     private Languages languages;
     private Messages messages;
     private Router router;
     private VelocityEngine velocityEngine;
+    private StringTemplateCache<Template> stringTemplateCache;
+
+    // "language|locale" -> helpers context, bounded
+    private final BoundedCache<String, VelocityContext> helpersContexts = new BoundedCache<>(MAX_HELPERS_CONTEXTS);
 
     @Override
     public void init(Application application) {
@@ -93,6 +101,8 @@ public class VelocityTemplateEngine implements TemplateEngine {
         init(application, properties);
 
         velocityEngine = new VelocityEngine(properties);
+        stringTemplateCache = new StringTemplateCache<>(pippoSettings);
+        helpersContexts.clear();
     }
 
     @Override
@@ -102,13 +112,7 @@ public class VelocityTemplateEngine implements TemplateEngine {
 
         // merge the template
         try {
-            RuntimeServices runtimeServices = RuntimeSingleton.getRuntimeServices();
-            StringReader reader = new StringReader(templateContent);
-            SimpleNode node = runtimeServices.parse(reader, "StringTemplate");
-            Template template = new Template();
-            template.setRuntimeServices(runtimeServices);
-            template.setData(node);
-            template.initDocument();
+            Template template = stringTemplateCache.get(templateContent, this::compileStringTemplate);
             template.merge(context, writer);
         } catch (Exception e) {
             throw new PippoRuntimeException(e);
@@ -134,9 +138,35 @@ public class VelocityTemplateEngine implements TemplateEngine {
         }
     }
 
+    @Override
+    public String getFileExtension() {
+        return VM;
+    }
+
+    @Override
+    public void compile(String templateName) {
+        velocityEngine.getTemplate(templateName);
+    }
+
     protected void init(Application application, Properties properties) {
     }
 
+    private Template compileStringTemplate(String templateContent) {
+        try {
+            RuntimeServices runtimeServices = RuntimeSingleton.getRuntimeServices();
+            StringReader reader = new StringReader(templateContent);
+            SimpleNode node = runtimeServices.parse(reader, "StringTemplate");
+            Template template = new Template();
+            template.setRuntimeServices(runtimeServices);
+            template.setData(node);
+            template.initDocument();
+
+            return template;
+        } catch (Exception e) {
+            throw new PippoRuntimeException(e, "Failed to compile string template");
+        }
+    }
+
     private VelocityContext createVelocityContext(Map<String, Object> model) {
         // prepare the locale-aware i18n method
         String language = (String) model.get(PippoConstants.REQUEST_PARAMETER_LANG);
@@ -150,7 +180,20 @@ public class VelocityTemplateEngine implements TemplateEngine {
             locale = languages.getLocaleOrDefault(language);
         }
 
-        VelocityContext context = new VelocityContext(model);
+        // the helpers context is read only so it's shared by all renders with the same language and locale
+        String key = language + '|' + locale;
+        VelocityContext helpersContext = helpersContexts.get(key);
+        if (helpersContext == null) {
+            helpersContext = createHelpersContext(language, locale);
+            helpersContexts.putIfAbsent(key, helpersContext);
+        }
+
+        // the model is layered over the helpers (not copied)
+        return new VelocityContext(model, helpersContext);
+    }
+
+    private VelocityContext createHelpersContext(String language, Locale locale) {
+        VelocityContext context = new VelocityContext();
 
         context.put("pippo", new PippoHelper(messages, language, locale, router));
         context.put("contextPath", router.getContextPath());